@@ -1,6 +1,7 @@
 package chihalu.building.support;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.nio.file.Path;
 
 import net.fabricmc.api.ClientModInitializer;
@@ -29,19 +30,26 @@ import net.minecraft.util.ActionResult;
 import net.minecraft.util.WorldSavePath;
 import org.lwjgl.glfw.GLFW;
 
+import chihalu.building.support.client.ArmorTabPager;
 import chihalu.building.support.client.CarpetPlacementModeClient;
 import chihalu.building.support.client.ClientNotificationBridge;
+import chihalu.building.support.client.CreativeTabRefresher;
+import chihalu.building.support.client.HistoryUsageRecorder;
 import chihalu.building.support.client.screen.DecoratedArmorPreviewScreen;
 import chihalu.building.support.config.BuildingSupportConfig;
 import chihalu.building.support.config.BuildingSupportConfig.ItemGroupOption;
 import chihalu.building.support.customtabs.CustomTabsManager;
 import chihalu.building.support.favorites.FavoritesManager;
 import chihalu.building.support.history.HistoryManager;
+import chihalu.building.support.itemgroup.TrimmedArmorItems;
 import chihalu.building.support.mixin.client.CreativeInventoryScreenInvoker;
 import chihalu.building.support.mixin.client.HandledScreenAccessor;
+import chihalu.building.support.storage.PersistenceScheduler;
 import chihalu.building.support.storage.SavedStack;
 
 public class BuildingSupportClient implements ClientModInitializer {
+	private static final float HISTORY_LOAD_MORE_SCROLL_THRESHOLD = 0.95f;
+	private static final int HISTORY_VISIBLE_SLOTS = 45;
 	private static final KeyBinding.Category UTILITY_CATEGORY = KeyBinding.Category.create(BuildingSupport.id("favorites"));
 	private KeyBinding toggleFavoriteKey;
 	private KeyBinding toggleCustomTabKey;
@@ -76,6 +84,10 @@ public class BuildingSupportClient implements ClientModInitializer {
 			UTILITY_CATEGORY
 		));
 		ScreenEvents.BEFORE_INIT.register((client, screen, scaledWidth, scaledHeight) -> {
+			if (screen instanceof CreativeInventoryScreen) {
+				// 画面を閉じている間に溜まったタブの変更を、開く直前にまとめて反映する
+				CreativeTabRefresher.refreshStaleTabs();
+			}
 			ScreenKeyboardEvents.beforeKeyPress(screen).register(new ScreenKeyboardEvents.BeforeKeyPress() {
 				@Override
 				public void beforeKeyPress(net.minecraft.client.gui.screen.Screen currentScreen, KeyInput input) {
@@ -109,8 +121,18 @@ public class BuildingSupportClient implements ClientModInitializer {
 				}
 				return true;
 			});
+			ScreenMouseEvents.afterMouseScroll(screen).register((currentScreen, mouseX, mouseY, horizontalAmount, verticalAmount, consumed) -> {
+				if (currentScreen instanceof CreativeInventoryScreen creativeScreen) {
+					if (verticalAmount < 0) {
+						loadMoreHistoryIfScrolledToEnd(creativeScreen);
+					}
+					ArmorTabPager.onMouseScroll(creativeScreen, verticalAmount);
+				}
+				return consumed;
+			});
 		});
 
+		HistoryUsageRecorder.init(BuildingSupportClient::recordHistoryBatch);
 		registerUsageEvents();
 
 		ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
@@ -118,28 +140,50 @@ public class BuildingSupportClient implements ClientModInitializer {
 				if (handler != null) {
 					SavedStack.updateLookup(handler.getRegistryManager());
 				}
-				FavoritesManager.getInstance().reload();
-				CustomTabsManager.getInstance().reload();
 				currentWorldKey = resolveWorldKey(client, handler);
-				HistoryManager.getInstance().setActiveWorldKey(currentWorldKey);
-				List<ItemStack> historyStacks = updateHistoryGroupStacks();
-				if (client.currentScreen instanceof CreativeInventoryScreen creativeScreen) {
-					refreshHistoryTabIfSelected(creativeScreen, historyStacks);
-				}
+				HistoryUsageRecorder.reset();
+				// ファイルの読み込みは I/O スレッドで行い、終わるまでは空のタブを表示しておく
+				CompletableFuture<Void> favoritesLoad = FavoritesManager.getInstance().reloadAsync();
+				CompletableFuture<Void> customTabsLoad = CustomTabsManager.getInstance().reloadAsync();
+				CompletableFuture<Void> historyLoad = HistoryManager.getInstance().setActiveWorldKeyAsync(currentWorldKey);
+				CreativeTabRefresher.markAllStale();
+				String joinedWorldKey = currentWorldKey;
+				CompletableFuture.allOf(favoritesLoad, customTabsLoad, historyLoad).whenCompleteAsync((ignored, throwable) -> {
+					// 別のワールドへ移っていれば、そちらの読み込みを待ってしまわないよう何もしない
+					if (currentWorldKey == null || !currentWorldKey.equals(joinedWorldKey)) {
+						return;
+					}
+					FavoritesManager.getInstance().awaitLoad();
+					CustomTabsManager.getInstance().awaitLoad();
+					HistoryManager.getInstance().awaitActiveLoad();
+					CreativeTabRefresher.markAllStale();
+				}, client);
 			});
 		});
 
 		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
 			client.execute(() -> {
 				SavedStack.resetLookup();
+				// 切断したワールドのレジストリを参照する防具一覧を手放す
+				TrimmedArmorItems.invalidateCache();
 				currentWorldKey = null;
-				HistoryManager.getInstance().setActiveWorldKey(null);
-				BuildingSupportClient.onHistoryModeChanged();
+				HistoryUsageRecorder.reset();
+				// 既定の履歴は I/O スレッドで読み込み、次に履歴へアクセスした時点で反映させる
+				refreshHistoryTabWhenLoaded(HistoryManager.getInstance().setActiveWorldKeyAsync(null));
+				// ワールドを離れた時点で書き出し待ちの内容をすべて保存へ回す
+				PersistenceScheduler.getInstance().flushAll();
 			});
 		});
 
 		InventoryTabVisibilityController.reloadFromConfig();
 		CarpetPlacementModeClient.init(carpetAltModeKey);
+		// 退避した古い履歴のページを I/O スレッドで復元し終えたら、履歴タブへ反映する
+		HistoryManager.getInstance().setSpillPageListener(() -> {
+			MinecraftClient client = MinecraftClient.getInstance();
+			if (client != null) {
+				client.execute(() -> CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.HISTORY));
+			}
+		});
 		ClientNotificationBridge.setHandler(translationKey -> {
 			MinecraftClient client = MinecraftClient.getInstance();
 			if (client == null) {
@@ -211,14 +255,7 @@ public class BuildingSupportClient implements ClientModInitializer {
 			client.player.sendMessage(Text.translatable("message.utility-toolkit.favorite.removed", itemText, tabText).formatted(Formatting.YELLOW), false);
 		}
 
-		ItemGroup favoritesGroup = Registries.ITEM_GROUP.get(BuildingSupport.FAVORITES_ITEM_GROUP_KEY);
-		var favoritesStacks = manager.getDisplayStacksForTab();
-		replaceGroupStacks(favoritesGroup, favoritesStacks);
-
-		ItemGroup currentTab = CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab();
-		if (currentTab == favoritesGroup) {
-			((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(favoritesStacks);
-		}
+		CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.FAVORITES);
 	}
 
 	private void handleToggleCustomTab(MinecraftClient client, CreativeInventoryScreen screen) {
@@ -243,14 +280,7 @@ public class BuildingSupportClient implements ClientModInitializer {
 			client.player.sendMessage(Text.translatable(messageKey, itemText, tabNameText).formatted(color), false);
 		}
 
-		ItemGroup customGroup = Registries.ITEM_GROUP.get(BuildingSupport.CUSTOM_TAB_ITEM_GROUP_KEY);
-		List<ItemStack> customStacks = manager.getDisplayStacksForTab();
-		replaceGroupStacks(customGroup, customStacks);
-
-		ItemGroup currentTab = CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab();
-		if (currentTab == customGroup) {
-			((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(customStacks);
-		}
+		CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.CUSTOM);
 	}
 
 	// Ctrl+右クリック時に装飾済み装備のプレビュー画面を開く処理
@@ -303,63 +333,45 @@ public class BuildingSupportClient implements ClientModInitializer {
 		});
 	}
 
+	// 連続使用はここでまとめ、実際の記録は tick の終わりに recordHistoryBatch で行う
 	public static void recordHistoryUsage(ItemStack stack) {
-		if (stack.isEmpty()) {
-			return;
-		}
-
-		HistoryManager.getInstance().recordUsage(stack); // 使用履歴にも装飾込みで反映する
-
-		List<ItemStack> historyStacks = updateHistoryGroupStacks();
-
-		if (MinecraftClient.getInstance().currentScreen instanceof CreativeInventoryScreen creativeScreen) {
-			refreshHistoryTabIfSelected(creativeScreen, historyStacks);
-		}
+		HistoryUsageRecorder.submit(stack);
 	}
 
-	private static List<ItemStack> updateHistoryGroupStacks() {
-		BuildingSupportConfig config = BuildingSupportConfig.getInstance();
-		if (!config.isItemGroupEnabled(ItemGroupOption.HISTORY)) {
-			return List.of();
-		}
-		ItemGroup historyGroup = Registries.ITEM_GROUP.get(BuildingSupport.HISTORY_ITEM_GROUP_KEY);
-		List<ItemStack> historyStacks = HistoryManager.getInstance().getDisplayStacksForTab();
-		replaceGroupStacks(historyGroup, historyStacks);
-		return historyStacks;
+	private static void recordHistoryBatch(List<ItemStack> stacks) {
+		HistoryManager.getInstance().recordUsages(stacks); // 使用履歴にも装飾込みで反映する
+		// タブの作り直しはクリエイティブ画面で履歴タブを表示するときまで遅らせる
+		CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.HISTORY);
 	}
 
-	private static void refreshHistoryTabIfSelected(CreativeInventoryScreen screen, List<ItemStack> historyStacks) {
+	// 履歴タブを末尾までスクロールしたら、ディスクへ退避した古い履歴を1ページ分追加する
+	private static void loadMoreHistoryIfScrolledToEnd(CreativeInventoryScreen screen) {
 		if (!BuildingSupportConfig.getInstance().isItemGroupEnabled(ItemGroupOption.HISTORY)) {
 			return;
 		}
 		ItemGroup historyGroup = Registries.ITEM_GROUP.get(BuildingSupport.HISTORY_ITEM_GROUP_KEY);
-		ItemGroup currentTab = CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab();
-		if (currentTab == historyGroup) {
-			((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(historyStacks);
+		if (CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab() != historyGroup) {
+			return;
 		}
-	}
-
-	private static void replaceGroupStacks(ItemGroup group, List<ItemStack> newStacks) {
-		var displayStacks = group.getDisplayStacks();
-		displayStacks.clear();
-		for (ItemStack stack : newStacks) {
-			displayStacks.add(stack.copy());
+		// スクロールバーが出ない件数ならそのまま末尾に居るものとみなす
+		boolean fitsOnScreen = historyGroup.getDisplayStacks().size() <= HISTORY_VISIBLE_SLOTS;
+		if (!fitsOnScreen && ((CreativeInventoryScreenInvoker) screen).utility_toolkit$getScrollPosition() < HISTORY_LOAD_MORE_SCROLL_THRESHOLD) {
+			return;
 		}
-
-		var searchStacks = group.getSearchTabStacks();
-		searchStacks.clear();
-		for (ItemStack stack : newStacks) {
-			searchStacks.add(stack.copy());
+		if (HistoryManager.getInstance().loadMoreHistory()) {
+			CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.HISTORY);
 		}
 	}
 
 	public static void onHistoryModeChanged() {
+		refreshHistoryTabWhenLoaded(HistoryManager.getInstance().reloadActiveAsync());
+	}
+
+	// 読み込み中は空の履歴タブを表示し、読み込みが終わったらクライアントスレッドで作り直させる
+	private static void refreshHistoryTabWhenLoaded(CompletableFuture<Void> load) {
+		CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.HISTORY);
 		MinecraftClient client = MinecraftClient.getInstance();
-		HistoryManager.getInstance().reloadActive();
-		List<ItemStack> historyStacks = updateHistoryGroupStacks();
-		if (client.currentScreen instanceof CreativeInventoryScreen creativeScreen) {
-			refreshHistoryTabIfSelected(creativeScreen, historyStacks);
-		}
+		load.whenCompleteAsync((ignored, throwable) -> CreativeTabRefresher.markStale(CreativeTabRefresher.Tab.HISTORY), client);
 	}
 
 	private static String resolveWorldKey(MinecraftClient client, ClientPlayNetworkHandler handler) {
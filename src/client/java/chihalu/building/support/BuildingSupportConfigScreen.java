@@ -21,9 +21,12 @@ import net.minecraft.client.gui.widget.ElementListWidget;
 import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.text.Text;
 
+import chihalu.building.support.client.ArmorTabPager;
 import chihalu.building.support.config.BuildingSupportConfig;
 import chihalu.building.support.config.BuildingSupportConfig.WeatherMode;
 import chihalu.building.support.customtabs.CustomTabsManager;
+import chihalu.building.support.favorites.FavoritesManager;
+import chihalu.building.support.history.HistoryManager;
 
 @Environment(EnvType.CLIENT)
 public class BuildingSupportConfigScreen extends Screen {
@@ -395,6 +398,20 @@ public class BuildingSupportConfigScreen extends Screen {
 		modeButton.setFocused(false);
 		addDrawableChild(modeButton);
 
+		// 装備タブをトリムの模様ごとのページに分け、表示中のページだけを生成する
+		CyclingButtonWidget<Boolean> armorPagedToggle = CyclingButtonWidget.onOffBuilder(config.isArmorTabPagedModeEnabled())
+			.build(leftX, startY + ROW_SPACING, BUTTON_WIDTH, BUTTON_HEIGHT,
+				Text.translatable("config.utility-toolkit.inventory_control.armor_paged"),
+				(button, value) -> {
+					BuildingSupportConfig.getInstance().setArmorTabPagedModeEnabled(value);
+					ArmorTabPager.rebuildAll();
+					button.setFocused(false);
+					setFocused(null);
+				});
+		armorPagedToggle.setTooltip(Tooltip.of(Text.translatable("config.utility-toolkit.inventory_control.armor_paged.tooltip")));
+		armorPagedToggle.setFocused(false);
+		addDrawableChild(armorPagedToggle);
+
 		addDrawableChild(ButtonWidget.builder(Text.translatable("config.utility-toolkit.history_reset.button"),
 			button -> {
 				if (client != null) {
@@ -420,6 +437,19 @@ public class BuildingSupportConfigScreen extends Screen {
 			.dimensions(rightX, startY + ROW_SPACING * 2, BUTTON_WIDTH, BUTTON_HEIGHT)
 			.build());
 
+		// 保存データはバイナリ形式のため、確認や編集用に JSON で書き出せるようにする
+		addDrawableChild(ButtonWidget.builder(Text.translatable("config.utility-toolkit.inventory_control.export_json"),
+			button -> {
+				FavoritesManager.getInstance().exportJson();
+				CustomTabsManager.getInstance().exportJson();
+				HistoryManager.getInstance().exportJson();
+				button.setFocused(false);
+				setFocused(null);
+			})
+			.dimensions(getCenterButtonX(), startY + ROW_SPACING * 4, BUTTON_WIDTH, BUTTON_HEIGHT)
+			.tooltip(Tooltip.of(Text.translatable("config.utility-toolkit.inventory_control.export_json.tooltip")))
+			.build());
+
 		addDrawableChild(ButtonWidget.builder(Text.translatable("config.utility-toolkit.back_to_categories"),
 			button -> {
 				setFocused(null);
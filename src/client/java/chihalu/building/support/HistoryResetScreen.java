@@ -1,5 +1,7 @@
 package chihalu.building.support;
 
+import java.util.List;
+
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.gui.DrawContext;
@@ -78,7 +80,11 @@ public class HistoryResetScreen extends Screen {
 				worldStatusText = Text.translatable("config.utility-toolkit.history_reset.not_in_world");
 			}
 		} else {
-			worldStatusText = null;
+			// 各履歴ファイルは開かず、索引だけから保存済みのワールド数と容量を表示する
+			List<HistoryManager.WorldHistoryInfo> histories = HistoryManager.getInstance().listWorldHistories();
+			long totalBytes = histories.stream().mapToLong(HistoryManager.WorldHistoryInfo::sizeBytes).sum();
+			worldStatusText = Text.translatable("config.utility-toolkit.history_reset.stored_worlds",
+				histories.size(), (totalBytes + 1023L) / 1024L);
 		}
 	}
 
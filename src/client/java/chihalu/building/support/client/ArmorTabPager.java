@@ -0,0 +1,100 @@
+package chihalu.building.support.client;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.text.Text;
+
+import chihalu.building.support.itemgroup.TrimmedArmorItems;
+import chihalu.building.support.mixin.client.CreativeInventoryScreenInvoker;
+import chihalu.building.support.mixin.client.ItemGroupsAccessor;
+
+/**
+ * 装備タブのページ表示をクリエイティブ画面から操作する。
+ * ホイールでページを送り、切り替えたタブだけを作り直す。表示中のページ以外のスタックは生成しない。
+ */
+public final class ArmorTabPager {
+	// 9列×5行。これ以下ならページ内のスクロールは発生しない
+	private static final int VISIBLE_SLOTS = 45;
+	private static final float SCROLL_END_THRESHOLD = 0.95f;
+	private static final float SCROLL_START_THRESHOLD = 0.05f;
+
+	private ArmorTabPager() {
+	}
+
+	/**
+	 * 装備タブを表示中にホイールを回したときに呼ぶ。ページ内でスクロールできる場合は端まで来てから次のページへ進む。
+	 */
+	public static void onMouseScroll(CreativeInventoryScreen screen, double verticalAmount) {
+		if (verticalAmount == 0 || !TrimmedArmorItems.isPagedModeEnabled()) {
+			return;
+		}
+		ItemGroup selected = CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab();
+		RegistryKey<ItemGroup> key = armorGroupKey(selected);
+		if (key == null) {
+			return;
+		}
+		int delta = verticalAmount < 0 ? 1 : -1;
+		if (selected.getDisplayStacks().size() > VISIBLE_SLOTS) {
+			float scrollPosition = ((CreativeInventoryScreenInvoker) screen).utility_toolkit$getScrollPosition();
+			if (delta > 0 ? scrollPosition < SCROLL_END_THRESHOLD : scrollPosition > SCROLL_START_THRESHOLD) {
+				return;
+			}
+		}
+		if (TrimmedArmorItems.turnPage(key, delta) && rebuild(selected)) {
+			((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(selected.getDisplayStacks());
+		}
+	}
+
+	/**
+	 * ページ表示の切り替え後に、すべての装備タブを作り直す。
+	 * 検索タブの索引は次にタブ一覧が作り直されたとき (ワールドへの再接続など) に反映される。
+	 */
+	public static void rebuildAll() {
+		for (ItemGroup group : Registries.ITEM_GROUP) {
+			if (armorGroupKey(group) != null) {
+				rebuild(group);
+			}
+		}
+		MinecraftClient client = MinecraftClient.getInstance();
+		ItemGroup selected = CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab();
+		if (client.currentScreen instanceof CreativeInventoryScreen screen && armorGroupKey(selected) != null) {
+			((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(selected.getDisplayStacks());
+		}
+	}
+
+	/**
+	 * ページ表示中の装備タブ名にページ番号を添える。対象外のタブは null を返す。
+	 */
+	public static Text decorateDisplayName(ItemGroup group, Text name) {
+		if (name == null || !TrimmedArmorItems.isPagedModeEnabled()) {
+			return null;
+		}
+		RegistryKey<ItemGroup> key = armorGroupKey(group);
+		if (key == null) {
+			return null;
+		}
+		return Text.translatable("itemGroup.utility-toolkit.equipment.paged",
+			name, TrimmedArmorItems.getPage(key) + 1, TrimmedArmorItems.getPageCount());
+	}
+
+	// タブの一覧がまだ一度も作られていない場合は何もしない (初回表示時にバニラ側で作られる)
+	private static boolean rebuild(ItemGroup group) {
+		ItemGroup.DisplayContext context = ItemGroupsAccessor.utility_toolkit$getDisplayContext();
+		if (context == null) {
+			return false;
+		}
+		group.updateEntries(context);
+		return true;
+	}
+
+	private static RegistryKey<ItemGroup> armorGroupKey(ItemGroup group) {
+		if (group == null) {
+			return null;
+		}
+		RegistryKey<ItemGroup> key = Registries.ITEM_GROUP.getKey(group).orElse(null);
+		return key != null && TrimmedArmorItems.isArmorGroup(key) ? key : null;
+	}
+}
@@ -0,0 +1,151 @@
+package chihalu.building.support.client;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKey;
+
+import chihalu.building.support.BuildingSupport;
+import chihalu.building.support.config.BuildingSupportConfig;
+import chihalu.building.support.config.BuildingSupportConfig.ItemGroupOption;
+import chihalu.building.support.customtabs.CustomTabsManager;
+import chihalu.building.support.favorites.FavoritesManager;
+import chihalu.building.support.history.HistoryManager;
+import chihalu.building.support.mixin.client.CreativeInventoryScreenInvoker;
+
+/**
+ * 履歴・お気に入り・カスタムタブの ItemGroup を、必要になった時だけ作り直す。
+ * 内容が変わったタブには印を付けておき、クリエイティブ画面を開いたときかそのタブが選ばれたときに1回だけ反映する。
+ * サバイバルで建築している間はタブの更新に一切コストがかからない。
+ */
+public final class CreativeTabRefresher {
+	public enum Tab {
+		HISTORY(BuildingSupport.HISTORY_ITEM_GROUP_KEY, ItemGroupOption.HISTORY,
+			() -> HistoryManager.getInstance().getDisplayStacksForTab()),
+		FAVORITES(BuildingSupport.FAVORITES_ITEM_GROUP_KEY, ItemGroupOption.FAVORITES,
+			() -> FavoritesManager.getInstance().getDisplayStacksForTab()),
+		// カスタムタブは表示設定の対象外で常に有効
+		CUSTOM(BuildingSupport.CUSTOM_TAB_ITEM_GROUP_KEY, null,
+			() -> CustomTabsManager.getInstance().getDisplayStacksForTab());
+
+		private final RegistryKey<ItemGroup> key;
+		private final ItemGroupOption option;
+		private final Supplier<List<ItemStack>> stacks;
+
+		Tab(RegistryKey<ItemGroup> key, ItemGroupOption option, Supplier<List<ItemStack>> stacks) {
+			this.key = key;
+			this.option = option;
+			this.stacks = stacks;
+		}
+
+		private ItemGroup group() {
+			return Registries.ITEM_GROUP.get(key);
+		}
+
+		private boolean isEnabled() {
+			return option == null || BuildingSupportConfig.getInstance().isItemGroupEnabled(option);
+		}
+	}
+
+	// 内容が変わったが、まだ ItemGroup へ反映していないタブ (クライアントスレッドからのみ触る)
+	private static final Set<Tab> staleTabs = EnumSet.noneOf(Tab.class);
+	private static final Map<Tab, AppliedStacks> appliedStacks = new EnumMap<>(Tab.class);
+
+	private CreativeTabRefresher() {
+	}
+
+	/**
+	 * タブの内容が変わったことを記録する。そのタブを表示中の場合だけ、その場で作り直す。
+	 */
+	public static void markStale(Tab tab) {
+		staleTabs.add(tab);
+		MinecraftClient client = MinecraftClient.getInstance();
+		if (client != null && client.currentScreen instanceof CreativeInventoryScreen screen
+			&& CreativeInventoryScreenInvoker.utility_toolkit$getSelectedTab() == tab.group()) {
+			List<ItemStack> stacks = refreshIfStale(tab);
+			if (stacks != null) {
+				((CreativeInventoryScreenInvoker) screen).utility_toolkit$refreshSelectedTab(stacks);
+			}
+		}
+	}
+
+	public static void markAllStale() {
+		for (Tab tab : Tab.values()) {
+			markStale(tab);
+		}
+	}
+
+	/**
+	 * クリエイティブ画面を開く直前に呼び、印の付いたタブをすべて作り直す。
+	 */
+	public static void refreshStaleTabs() {
+		for (Tab tab : Tab.values()) {
+			refreshIfStale(tab);
+		}
+	}
+
+	/**
+	 * クリエイティブ画面でタブが選ばれる直前に呼ばれる。
+	 */
+	public static void onTabSelected(ItemGroup group) {
+		if (staleTabs.isEmpty()) {
+			return;
+		}
+		for (Tab tab : Tab.values()) {
+			if (tab.group() == group) {
+				refreshIfStale(tab);
+				return;
+			}
+		}
+	}
+
+	// 印が付いていれば作り直して新しい一覧を返す。作り直さなかった場合は null
+	private static List<ItemStack> refreshIfStale(Tab tab) {
+		if (!tab.isEnabled() || !staleTabs.remove(tab)) {
+			return null;
+		}
+		List<ItemStack> stacks = List.copyOf(tab.stacks.get());
+		replaceGroupStacks(tab, tab.group(), stacks);
+		return stacks;
+	}
+
+	/**
+	 * 前回反映した一覧との差分だけをコレクションへ適用する。
+	 * バニラ側で一覧が作り直されてコレクション自体が入れ替わっていた場合や、差分で表せない並べ替えの場合は全体を入れ直す。
+	 * 管理クラスが返すスタックは変更されないため、コピーせずにそのまま共有する。
+	 */
+	private static void replaceGroupStacks(Tab tab, ItemGroup group, List<ItemStack> newStacks) {
+		Collection<ItemStack> displayStacks = group.getDisplayStacks();
+		Collection<ItemStack> searchStacks = group.getSearchTabStacks();
+		AppliedStacks previous = appliedStacks.get(tab);
+		ItemGroupStackDiff diff = null;
+		if (previous != null) {
+			diff = ItemGroupStackDiff.plan(previous.stacks(), newStacks);
+		}
+		applyTo(displayStacks, diff, previous == null ? null : previous.display(), newStacks);
+		applyTo(searchStacks, diff, previous == null ? null : previous.search(), newStacks);
+		appliedStacks.put(tab, new AppliedStacks(displayStacks, searchStacks, newStacks));
+	}
+
+	private static void applyTo(Collection<ItemStack> target, ItemGroupStackDiff diff, Collection<ItemStack> previousTarget, List<ItemStack> newStacks) {
+		if (diff != null && target == previousTarget && diff.applyTo(target)) {
+			return;
+		}
+		target.clear();
+		target.addAll(newStacks);
+	}
+
+	// 最後に反映したコレクションと一覧。コレクションが同じインスタンスの間だけ差分更新に使える
+	private record AppliedStacks(Collection<ItemStack> display, Collection<ItemStack> search, List<ItemStack> stacks) {
+	}
+}
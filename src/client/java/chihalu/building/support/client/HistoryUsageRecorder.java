@@ -0,0 +1,73 @@
+package chihalu.building.support.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.item.ItemStack;
+
+/**
+ * ブロック設置などの使用イベントを履歴へ渡す前にまとめる。
+ * 直前に記録したものと同じスタックの連続使用は一定時間内なら読み捨て、
+ * それ以外は tick の終わりに1回の呼び出しでまとめて履歴へ反映する。
+ */
+public final class HistoryUsageRecorder {
+	// 同じスタックの再使用を読み捨てる時間。履歴のリセットなどで先頭から外れても、この時間が過ぎれば記録し直す
+	private static final long COALESCE_WINDOW_MILLIS = 5000L;
+	// 1 tick に溜める上限。超えた分は古いものから捨てる (いずれも履歴の先頭には残らないため)
+	private static final int MAX_BATCH_SIZE = 64;
+
+	private static final List<ItemStack> pending = new ArrayList<>();
+	private static ItemStack lastRecorded = ItemStack.EMPTY;
+	private static long lastRecordedAt = 0L;
+
+	private HistoryUsageRecorder() {
+	}
+
+	/**
+	 * @param batchHandler 新しい順ではなく使用順に並んだスタックを受け取り、履歴へ反映する処理
+	 */
+	public static void init(Consumer<List<ItemStack>> batchHandler) {
+		ClientTickEvents.END_CLIENT_TICK.register(client -> {
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<ItemStack> batch = List.copyOf(pending);
+			pending.clear();
+			batchHandler.accept(batch);
+		});
+	}
+
+	/**
+	 * 使用されたスタックを受け付ける。クライアントスレッドから呼ぶこと。
+	 */
+	public static void submit(ItemStack stack) {
+		if (stack == null || stack.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		// 同じブロックを置き続ける場合はコピーも作らずに比較だけで終える
+		// 読み捨てたときは時刻を更新しない。置き続けていても最後に記録してから一定時間ごとに記録し直す
+		if (now - lastRecordedAt < COALESCE_WINDOW_MILLIS && ItemStack.areItemsAndComponentsEqual(stack, lastRecorded)) {
+			return;
+		}
+		ItemStack snapshot = stack.copyWithCount(1);
+		pending.removeIf(existing -> ItemStack.areItemsAndComponentsEqual(existing, snapshot));
+		if (pending.size() >= MAX_BATCH_SIZE) {
+			pending.remove(0);
+		}
+		pending.add(snapshot);
+		lastRecorded = snapshot;
+		lastRecordedAt = now;
+	}
+
+	/**
+	 * ワールドの切り替え時に呼び、前のワールドで使ったスタックを読み捨てないようにする。
+	 */
+	public static void reset() {
+		pending.clear();
+		lastRecorded = ItemStack.EMPTY;
+		lastRecordedAt = 0L;
+	}
+}
@@ -0,0 +1,105 @@
+package chihalu.building.support.client;
+
+import java.util.Collection;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenCustomHashSet;
+import net.minecraft.item.ItemStack;
+
+/**
+ * ItemGroup の表示用コレクションを、前回反映した一覧との差分だけで更新する。
+ * <p>
+ * 先頭と末尾の一致部分を除いた中央について、末尾への追加・任意位置の削除・先頭への移動で表せる場合だけ差分を適用する。
+ * お気に入りの追加や削除、履歴の先頭への記録はいずれもこの形になり、変更件数分の操作だけで済む。
+ * それ以外の並べ替えは {@link #plan} が null を返すので、呼び出し側で全体を作り直す。
+ */
+final class ItemGroupStackDiff {
+	private final List<ItemStack> removed;
+	// 先頭へ置く要素。並びは反映後の順
+	private final List<ItemStack> prepended;
+	private final List<ItemStack> appended;
+
+	private ItemGroupStackDiff(List<ItemStack> removed, List<ItemStack> prepended, List<ItemStack> appended) {
+		this.removed = removed;
+		this.prepended = prepended;
+		this.appended = appended;
+	}
+
+	/**
+	 * @return 差分で表せない場合は null
+	 */
+	static ItemGroupStackDiff plan(List<ItemStack> previous, List<ItemStack> next) {
+		int limit = Math.min(previous.size(), next.size());
+		int prefix = 0;
+		while (prefix < limit && isSameStack(previous.get(prefix), next.get(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < limit - prefix
+			&& isSameStack(previous.get(previous.size() - 1 - suffix), next.get(next.size() - 1 - suffix))) {
+			suffix++;
+		}
+		List<ItemStack> removed = previous.subList(prefix, previous.size() - suffix);
+		List<ItemStack> added = next.subList(prefix, next.size() - suffix);
+
+		if (added.isEmpty()) {
+			return new ItemGroupStackDiff(removed, List.of(), List.of());
+		}
+		if (removed.isEmpty() && suffix == 0) {
+			return new ItemGroupStackDiff(List.of(), List.of(), added);
+		}
+		if (prefix != 0) {
+			// 途中への挿入はコレクションが対応していないため全体を作り直す
+			return null;
+		}
+		// 先頭へ shift 件が入り、元の並びはその後ろへずれただけか確認する
+		int shift = removed.isEmpty() ? added.size() : indexOf(added, removed.get(0));
+		if (shift <= 0) {
+			return null;
+		}
+		int overlap = added.size() - shift;
+		if (overlap > removed.size()) {
+			return null;
+		}
+		for (int i = 0; i < overlap; i++) {
+			if (!isSameStack(added.get(shift + i), removed.get(i))) {
+				return null;
+			}
+		}
+		return new ItemGroupStackDiff(removed.subList(overlap, removed.size()), added.subList(0, shift), List.of());
+	}
+
+	/**
+	 * 差分を適用する。先頭への移動に対応していないコレクションでは false を返す。
+	 */
+	boolean applyTo(Collection<ItemStack> target) {
+		if (!prepended.isEmpty() && !(target instanceof ObjectLinkedOpenCustomHashSet<ItemStack>)) {
+			return false;
+		}
+		for (ItemStack stack : removed) {
+			target.remove(stack);
+		}
+		if (!prepended.isEmpty()) {
+			ObjectLinkedOpenCustomHashSet<ItemStack> linked = (ObjectLinkedOpenCustomHashSet<ItemStack>) target;
+			for (int i = prepended.size() - 1; i >= 0; i--) {
+				linked.addAndMoveToFirst(prepended.get(i));
+			}
+		}
+		target.addAll(appended);
+		return true;
+	}
+
+	private static int indexOf(List<ItemStack> stacks, ItemStack target) {
+		for (int i = 0; i < stacks.size(); i++) {
+			if (isSameStack(stacks.get(i), target)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// 使い回したインスタンスは参照比較だけで済ませる
+	private static boolean isSameStack(ItemStack left, ItemStack right) {
+		return left == right || ItemStack.areItemsAndComponentsEqual(left, right);
+	}
+}
@@ -17,6 +17,9 @@ public interface CreativeInventoryScreenInvoker {
 	@Invoker("refreshSelectedTab")
 	void utility_toolkit$refreshSelectedTab(Collection<ItemStack> stacks);
 
+	@Accessor("scrollPosition")
+	float utility_toolkit$getScrollPosition();
+
 	@Accessor("selectedTab")
 	static ItemGroup utility_toolkit$getSelectedTab() {
 		throw new AssertionError();
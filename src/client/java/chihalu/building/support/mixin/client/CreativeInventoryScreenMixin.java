@@ -0,0 +1,21 @@
+package chihalu.building.support.mixin.client;
+
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.item.ItemGroup;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import chihalu.building.support.client.CreativeTabRefresher;
+
+/**
+ * タブが選ばれて一覧が組み立てられる直前に、変更が溜まっていれば Utility Toolkit のタブを作り直す。
+ */
+@Mixin(CreativeInventoryScreen.class)
+public abstract class CreativeInventoryScreenMixin {
+	@Inject(method = "setSelectedTab", at = @At("HEAD"))
+	private void utility_toolkit$refreshStaleTab(ItemGroup group, CallbackInfo ci) {
+		CreativeTabRefresher.onTabSelected(group);
+	}
+}
@@ -12,6 +12,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import chihalu.building.support.client.ArmorTabPager;
 import chihalu.building.support.client.accessor.ItemGroupIconAccessor;
 
 @Mixin(ItemGroup.class)
@@ -25,6 +26,14 @@ public abstract class ItemGroupMixin implements ItemGroupIconAccessor {
 		}
 	}
 
+	@Inject(method = "getDisplayName", at = @At("RETURN"), cancellable = true)
+	private void utility_toolkit$appendArmorTabPage(CallbackInfoReturnable<Text> cir) {
+		Text decorated = ArmorTabPager.decorateDisplayName((ItemGroup) (Object) this, cir.getReturnValue());
+		if (decorated != null) {
+			cir.setReturnValue(decorated);
+		}
+	}
+
 	@Accessor("icon")
 	@Mutable
 	protected abstract void utility_toolkit$setIcon(ItemStack stack);
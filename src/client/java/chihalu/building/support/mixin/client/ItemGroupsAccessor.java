@@ -0,0 +1,14 @@
+package chihalu.building.support.mixin.client;
+
+import net.minecraft.item.ItemGroup;
+import net.minecraft.item.ItemGroups;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(ItemGroups.class)
+public interface ItemGroupsAccessor {
+	@Accessor("displayContext")
+	static ItemGroup.DisplayContext utility_toolkit$getDisplayContext() {
+		throw new AssertionError();
+	}
+}
@@ -4,6 +4,7 @@ import net.fabricmc.api.ModInitializer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
 import net.fabricmc.fabric.api.itemgroup.v1.FabricItemGroup;
 import net.minecraft.block.AbstractCandleBlock;
@@ -32,12 +33,14 @@ import chihalu.building.support.command.ExtinguishCommand;
 import chihalu.building.support.command.MemoCommand;
 import chihalu.building.support.command.MemoManager;
 import chihalu.building.support.command.PresetCommand;
+import chihalu.building.support.command.ProtectZoneCommand;
 import chihalu.building.support.command.VillageCommand;
 import chihalu.building.support.command.UtilityToolkitHelpCommand;
 import chihalu.building.support.config.BuildingSupportConfig;
 import chihalu.building.support.customtabs.CustomTabsManager;
 import chihalu.building.support.favorites.FavoritesManager;
 import chihalu.building.support.history.HistoryManager;
+import chihalu.building.support.init.ProtectionTargetIndex;
 import chihalu.building.support.itemgroup.CopperBuildingItems;
 import chihalu.building.support.itemgroup.EndBuildingItems;
 import chihalu.building.support.itemgroup.LightBuildingItems;
@@ -46,6 +49,8 @@ import chihalu.building.support.itemgroup.SignShelfItems;
 import chihalu.building.support.itemgroup.StoneBuildingItems;
 import chihalu.building.support.itemgroup.TrimmedArmorItems;
 import chihalu.building.support.itemgroup.WoodBuildingItems;
+import chihalu.building.support.protection.FireTickBudget;
+import chihalu.building.support.protection.ProtectionZones;
 import chihalu.building.support.village.VillageSpawnManager;
 import chihalu.building.support.network.CarpetPlacementMode;
 
@@ -218,6 +223,8 @@ public class BuildingSupport implements ModInitializer {
 			VillageCommand.register(dispatcher, registryAccess, VillageSpawnManager.getInstance()));
 		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
 			ExtinguishCommand.register(dispatcher, registryAccess));
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+			ProtectZoneCommand.register(dispatcher));
 		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
 			UtilityToolkitHelpCommand.register(dispatcher));
 	}
@@ -254,6 +261,12 @@ public class BuildingSupport implements ModInitializer {
 			return ActionResult.PASS;
 		});
 
+		// 延焼・融解の保護判定で使うビット列をタグの読み込みごとに作り直す
+		ProtectionTargetIndex.register();
+		ProtectionZones.register();
+		FireTickBudget.register();
+		// データパックの再読み込みでトリムの内容が変わりうるため、展開済みの防具一覧を作り直させる
+		ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> TrimmedArmorItems.invalidateCache());
 	}
 
 	private static void autoLightCandles(ServerWorld world, BlockPos pos, boolean restrictVanilla) {
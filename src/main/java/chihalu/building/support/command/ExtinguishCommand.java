@@ -4,6 +4,8 @@ import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import chihalu.building.support.config.BuildingSupportConfig;
+import chihalu.building.support.protection.FireTickBudget;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
@@ -31,6 +33,8 @@ public final class ExtinguishCommand {
 					.executes(context -> execute(context, DEFAULT_RADIUS))
 					.then(CommandManager.argument("radius", IntegerArgumentType.integer(MIN_RADIUS, MAX_RADIUS))
 						.executes(context -> execute(context, IntegerArgumentType.getInteger(context, "radius")))))
+				.then(CommandManager.literal("budget")
+					.executes(context -> showBudget(context.getSource())))
 		);
 	}
 
@@ -45,6 +49,19 @@ public final class ExtinguishCommand {
 		return removed;
 	}
 
+	private static int showBudget(ServerCommandSource source) {
+		// 2つの上限は同じ時点の設定から読む
+		BuildingSupportConfig.Snapshot config = BuildingSupportConfig.getInstance().snapshot();
+		long deferred = FireTickBudget.getDeferredCount(source.getWorld());
+		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.extinguish.budget",
+			describeLimit(config.fireTickBudget()), describeLimit(config.fireTickChunkBudget()), deferred), false);
+		return (int) Math.min(Integer.MAX_VALUE, deferred);
+	}
+
+	private static Text describeLimit(int limit) {
+		return limit > 0 ? Text.literal(Integer.toString(limit)) : Text.translatable("command.utility-toolkit.extinguish.budget.unlimited");
+	}
+
 	private static int extinguishWithin(ServerWorld world, BlockPos origin, int radius) {
 		BlockPos.Mutable mutable = new BlockPos.Mutable();
 		int radiusSq = radius * radius;
@@ -0,0 +1,117 @@
+package chihalu.building.support.command;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import chihalu.building.support.protection.ProtectionType;
+import chihalu.building.support.protection.ProtectionZone;
+import chihalu.building.support.protection.ProtectionZoneState;
+import chihalu.building.support.protection.ProtectionZones;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * 延焼・融解の保護を適用する区域を、ディメンションごとに登録するコマンド。
+ */
+public final class ProtectZoneCommand {
+	// 1辺の上限。チャンク索引の大きさを抑えるため
+	private static final int MAX_SIDE_LENGTH = 4096;
+	// 種類を省略したときは従来の延焼・融解の保護だけを付ける
+	private static final Set<ProtectionType> DEFAULT_TYPES = EnumSet.of(ProtectionType.FIRE, ProtectionType.ICE);
+
+	private static final SuggestionProvider<ServerCommandSource> ZONE_SUGGESTIONS = (context, builder) ->
+		CommandSource.suggestMatching(
+			ProtectionZones.get(context.getSource().getWorld()).getZones().stream().map(ProtectionZone::name),
+			builder
+		);
+
+	private ProtectZoneCommand() {
+	}
+
+	public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+		dispatcher.register(
+			CommandManager.literal("protectzone")
+				.requires(source -> source.hasPermissionLevel(2))
+				.then(CommandManager.literal("add")
+					.then(CommandManager.argument("name", StringArgumentType.word())
+						.then(CommandManager.argument("from", BlockPosArgumentType.blockPos())
+							.then(CommandManager.argument("to", BlockPosArgumentType.blockPos())
+								.executes(context -> executeAdd(context, DEFAULT_TYPES))
+								.then(CommandManager.literal("all")
+									.executes(context -> executeAdd(context, EnumSet.allOf(ProtectionType.class))))
+								.then(CommandManager.literal(ProtectionType.FIRE.id())
+									.executes(context -> executeAdd(context, EnumSet.of(ProtectionType.FIRE))))
+								.then(CommandManager.literal(ProtectionType.ICE.id())
+									.executes(context -> executeAdd(context, EnumSet.of(ProtectionType.ICE))))
+								.then(CommandManager.literal(ProtectionType.FREEZE.id())
+									.executes(context -> executeAdd(context, EnumSet.of(ProtectionType.FREEZE))))))))
+				.then(CommandManager.literal("remove")
+					.then(CommandManager.argument("name", StringArgumentType.word())
+						.suggests(ZONE_SUGGESTIONS)
+						.executes(ProtectZoneCommand::executeRemove)))
+				.then(CommandManager.literal("list")
+					.executes(context -> executeList(context.getSource())))
+		);
+	}
+
+	private static int executeAdd(CommandContext<ServerCommandSource> context, Set<ProtectionType> types) {
+		ServerCommandSource source = context.getSource();
+		String name = StringArgumentType.getString(context, "name");
+		BlockPos from = BlockPosArgumentType.getBlockPos(context, "from");
+		BlockPos to = BlockPosArgumentType.getBlockPos(context, "to");
+		BlockBox box = BlockBox.create(from, to);
+		if (box.getBlockCountX() > MAX_SIDE_LENGTH || box.getBlockCountZ() > MAX_SIDE_LENGTH) {
+			source.sendError(Text.translatable("command.utility-toolkit.protectzone.add.too_large", MAX_SIDE_LENGTH));
+			return 0;
+		}
+		ProtectionZones.get(source.getWorld()).putZone(new ProtectionZone(name, box, types));
+		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.protectzone.add.success",
+			name, describe(box), describe(types)), true);
+		return 1;
+	}
+
+	private static int executeRemove(CommandContext<ServerCommandSource> context) {
+		ServerCommandSource source = context.getSource();
+		String name = StringArgumentType.getString(context, "name");
+		if (!ProtectionZones.get(source.getWorld()).removeZone(name)) {
+			source.sendError(Text.translatable("command.utility-toolkit.protectzone.remove.not_found", name));
+			return 0;
+		}
+		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.protectzone.remove.success", name), true);
+		return 1;
+	}
+
+	private static int executeList(ServerCommandSource source) {
+		ProtectionZoneState state = ProtectionZones.get(source.getWorld());
+		Collection<ProtectionZone> zones = state.getZones();
+		if (zones.isEmpty()) {
+			source.sendFeedback(() -> Text.translatable("command.utility-toolkit.protectzone.list.empty"), false);
+			return 0;
+		}
+		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.protectzone.list.header", zones.size()), false);
+		for (ProtectionZone zone : zones) {
+			source.sendFeedback(() -> Text.translatable("command.utility-toolkit.protectzone.list.entry",
+				zone.name(), describe(zone.box()), describe(zone.types())), false);
+		}
+		return zones.size();
+	}
+
+	private static String describe(BlockBox box) {
+		return String.format("(%d, %d, %d) - (%d, %d, %d)",
+			box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+	}
+
+	private static String describe(Set<ProtectionType> types) {
+		return String.join(", ", types.stream().map(ProtectionType::id).toList());
+	}
+}
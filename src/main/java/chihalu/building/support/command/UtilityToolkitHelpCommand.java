@@ -30,6 +30,7 @@ public final class UtilityToolkitHelpCommand {
 		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.help.preset"), false);
 		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.help.village"), false);
 		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.help.extinguish"), false);
+		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.help.protectzone"), false);
 		source.sendFeedback(() -> Text.translatable("command.utility-toolkit.help.footer"), false);
 		return 1;
 	}
@@ -14,6 +14,7 @@ import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -29,6 +30,18 @@ public final class BuildingSupportConfig {
 	// カスタムタブ名の初期文字列を共通化
 	private static final String DEFAULT_CUSTOM_TAB_NAME = "カスタムタブ";
 	private static final String DEFAULT_CUSTOM_TAB_ICON_ID = "minecraft:paper";
+	// 履歴の保持件数。メモリに置く件数を超えた分はディスクへ退避される
+	public static final int DEFAULT_HISTORY_DEPTH = 64;
+	public static final int MAX_HISTORY_DEPTH = 10000;
+	public static final int DEFAULT_HISTORY_MEMORY_ENTRIES = 64;
+	public static final int MIN_HISTORY_MEMORY_ENTRIES = 16;
+	public static final int MAX_HISTORY_MEMORY_ENTRIES = 1024;
+	// 履歴ディレクトリの保持上限。超えた分は最終使用が古いワールド履歴から削除される
+	public static final int DEFAULT_HISTORY_RETENTION_MEGABYTES = 64;
+	public static final int DEFAULT_HISTORY_RETENTION_FILES = 256;
+	public static final int DEFAULT_HISTORY_RETENTION_DAYS = 180;
+	// 0 は上限なし (バニラと同じ挙動)
+	public static final int MAX_FIRE_TICK_BUDGET = 65536;
 
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 	private final Path configPath = BuildingSupportStorage.resolve("config.json");
@@ -50,17 +63,40 @@ public final class BuildingSupportConfig {
 	private int fixedTimeValue = 6000;
 	private boolean fixedWeatherEnabled = false;
 	private WeatherMode fixedWeatherMode = WeatherMode.CLEAR;
+	private int historyDepth = DEFAULT_HISTORY_DEPTH;
+	private int historyMemoryEntries = DEFAULT_HISTORY_MEMORY_ENTRIES;
+	private int historyRetentionMegabytes = DEFAULT_HISTORY_RETENTION_MEGABYTES;
+	private int historyRetentionFiles = DEFAULT_HISTORY_RETENTION_FILES;
+	private int historyRetentionDays = DEFAULT_HISTORY_RETENTION_DAYS;
+	private boolean armorTabPagedMode = false;
+	private int fireTickBudget = 0;
+	private int fireTickChunkBudget = 0;
+	// 上の値を写し取った読み取り専用の設定。更新のたびに作り直して差し替えるため、読み取り側はロックを取らない
+	private volatile Snapshot snapshot;
 
 	private BuildingSupportConfig() {
 		resetItemGroupVisibility();
 		resetCustomTabSettings();
+		publish();
 	}
 
 	public static BuildingSupportConfig getInstance() {
 		return INSTANCE;
 	}
 
+	/**
+	 * 現在の設定値をまとめて返す。ティック処理など頻繁に呼ばれる箇所では、これを1回だけ読んで使う。
+	 */
+	public Snapshot snapshot() {
+		return snapshot;
+	}
+
 	public synchronized void reload() {
+		readFromDisk();
+		publish();
+	}
+
+	private void readFromDisk() {
 		resetCustomTabSettings();
 		if (!Files.exists(configPath)) {
 			return;
@@ -86,12 +122,56 @@ public final class BuildingSupportConfig {
 				this.fixedTimeValue = sanitizeTimeValue(data.fixedTimeValue);
 				this.fixedWeatherEnabled = data.fixedWeatherEnabled;
 				this.fixedWeatherMode = data.fixedWeatherMode == null ? WeatherMode.CLEAR : data.fixedWeatherMode;
+				this.historyMemoryEntries = sanitizeHistoryMemoryEntries(data.historyMemoryEntries);
+				this.historyDepth = sanitizeHistoryDepth(data.historyDepth, this.historyMemoryEntries);
+				this.historyRetentionMegabytes = sanitizeRetention(data.historyRetentionMegabytes, DEFAULT_HISTORY_RETENTION_MEGABYTES, 4096);
+				this.historyRetentionFiles = sanitizeRetention(data.historyRetentionFiles, DEFAULT_HISTORY_RETENTION_FILES, 10000);
+				this.historyRetentionDays = sanitizeRetention(data.historyRetentionDays, DEFAULT_HISTORY_RETENTION_DAYS, 3650);
+				this.armorTabPagedMode = data.armorTabPagedMode;
+				this.fireTickBudget = sanitizeFireTickBudget(data.fireTickBudget);
+				this.fireTickChunkBudget = sanitizeFireTickBudget(data.fireTickChunkBudget);
 			}
 		} catch (IOException | JsonSyntaxException exception) {
 			getLogger().error("險ｭ螳壹ヵ繧｡繧､繝ｫ縺ｮ隱ｭ縺ｿ霎ｼ縺ｿ縺ｫ螟ｱ謨励＠縺ｾ縺励◆: {}", configPath, exception);
 		}
 	}
 
+	// 変更した値を公開してから保存する。呼び出し元はこのインスタンスのロックを保持していること
+	private void commit() {
+		publish();
+		save();
+	}
+
+	private void publish() {
+		snapshot = new Snapshot(
+			preventIceMelting,
+			preventHazardFireSpread,
+			autoLightCandles,
+			autoCarpetStringEnabled,
+			villageSpawnEnabled,
+			historyDisplayMode,
+			villageSpawnType,
+			pottedPlantPickPrefersPot,
+			Collections.unmodifiableMap(new EnumMap<>(itemGroupVisibility)),
+			memoListStyle,
+			disableSignEditScreen,
+			customTabName,
+			customTabIconId,
+			fixedTimeEnabled,
+			fixedTimeValue,
+			fixedWeatherEnabled,
+			fixedWeatherMode,
+			historyDepth,
+			historyMemoryEntries,
+			historyRetentionMegabytes,
+			historyRetentionFiles,
+			historyRetentionDays,
+			armorTabPagedMode,
+			fireTickBudget,
+			fireTickChunkBudget
+		);
+	}
+
 	public synchronized void save() {
 		try {
 			Files.createDirectories(configPath.getParent());
@@ -112,7 +192,15 @@ public final class BuildingSupportConfig {
 				fixedTimeValue,
 				fixedWeatherEnabled,
 				fixedWeatherMode,
-				autoCarpetStringEnabled
+				autoCarpetStringEnabled,
+				historyDepth,
+				historyMemoryEntries,
+				historyRetentionMegabytes,
+				historyRetentionFiles,
+				historyRetentionDays,
+				armorTabPagedMode,
+				fireTickBudget,
+				fireTickChunkBudget
 			);
 			try (Writer writer = Files.newBufferedWriter(configPath, StandardCharsets.UTF_8)) {
 				gson.toJson(data, writer);
@@ -122,22 +210,22 @@ public final class BuildingSupportConfig {
 		}
 	}
 
-	public synchronized boolean isPreventIceMeltingEnabled() {
-		return preventIceMelting;
+	public boolean isPreventIceMeltingEnabled() {
+		return snapshot.preventIceMelting();
 	}
 
 	public synchronized void setPreventIceMeltingEnabled(boolean enabled) {
 		if (this.preventIceMelting != enabled) {
 			this.preventIceMelting = enabled;
-			save();
+			commit();
 		}
 	}
 
 	/**
 	 * 焚火やマグマ由来の延焼を抑止するかどうかを取得する。
 	 */
-	public synchronized boolean isHazardFireProtectionEnabled() {
-		return preventHazardFireSpread;
+	public boolean isHazardFireProtectionEnabled() {
+		return snapshot.preventHazardFireSpread();
 	}
 
 	/**
@@ -146,45 +234,45 @@ public final class BuildingSupportConfig {
 	public synchronized void setHazardFireProtectionEnabled(boolean enabled) {
 		if (this.preventHazardFireSpread != enabled) {
 			this.preventHazardFireSpread = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isAutoLightCandlesEnabled() {
-		return autoLightCandles;
+	public boolean isAutoLightCandlesEnabled() {
+		return snapshot.autoLightCandles();
 	}
 
 	public synchronized void setAutoLightCandlesEnabled(boolean enabled) {
 		if (this.autoLightCandles != enabled) {
 			this.autoLightCandles = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isAutoCarpetStringEnabled() {
-		return autoCarpetStringEnabled;
+	public boolean isAutoCarpetStringEnabled() {
+		return snapshot.autoCarpetStringEnabled();
 	}
 
 	public synchronized void setAutoCarpetStringEnabled(boolean enabled) {
 		if (this.autoCarpetStringEnabled != enabled) {
 			this.autoCarpetStringEnabled = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isVillageSpawnEnabled() {
-		return villageSpawnEnabled;
+	public boolean isVillageSpawnEnabled() {
+		return snapshot.villageSpawnEnabled();
 	}
 
 	public synchronized void setVillageSpawnEnabled(boolean enabled) {
 		if (this.villageSpawnEnabled != enabled) {
 			this.villageSpawnEnabled = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized HistoryDisplayMode getHistoryDisplayMode() {
-		return historyDisplayMode;
+	public HistoryDisplayMode getHistoryDisplayMode() {
+		return snapshot.historyDisplayMode();
 	}
 
 	public synchronized void setHistoryDisplayMode(HistoryDisplayMode mode) {
@@ -193,12 +281,12 @@ public final class BuildingSupportConfig {
 		}
 		if (this.historyDisplayMode != mode) {
 			this.historyDisplayMode = mode;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized VillageSpawnType getVillageSpawnType() {
-		return villageSpawnType;
+	public VillageSpawnType getVillageSpawnType() {
+		return snapshot.villageSpawnType();
 	}
 
 	public synchronized void setVillageSpawnType(VillageSpawnType type) {
@@ -207,35 +295,35 @@ public final class BuildingSupportConfig {
 		}
 		if (this.villageSpawnType != type) {
 			this.villageSpawnType = type;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isPottedPlantPickPrefersPot() {
-		return pottedPlantPickPrefersPot;
+	public boolean isPottedPlantPickPrefersPot() {
+		return snapshot.pottedPlantPickPrefersPot();
 	}
 
 	public synchronized void setPottedPlantPickPrefersPot(boolean enabled) {
 		if (this.pottedPlantPickPrefersPot != enabled) {
 			this.pottedPlantPickPrefersPot = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isItemGroupEnabled(ItemGroupOption option) {
-		return itemGroupVisibility.getOrDefault(option, true);
+	public boolean isItemGroupEnabled(ItemGroupOption option) {
+		return snapshot.isItemGroupEnabled(option);
 	}
 
 	public synchronized void setItemGroupEnabled(ItemGroupOption option, boolean enabled) {
 		Boolean current = itemGroupVisibility.get(option);
 		if (current == null || current != enabled) {
 			itemGroupVisibility.put(option, enabled);
-			save();
+			commit();
 		}
 	}
 
-	public synchronized int getMemoListStyle() {
-		return memoListStyle;
+	public int getMemoListStyle() {
+		return snapshot.memoListStyle();
 	}
 
 	/**
@@ -248,39 +336,39 @@ public final class BuildingSupportConfig {
 			return false;
 		}
 		this.memoListStyle = normalized;
-		save();
+		commit();
 		return true;
 	}
 
-	public synchronized boolean isSignEditScreenDisabled() {
-		return disableSignEditScreen;
+	public boolean isSignEditScreenDisabled() {
+		return snapshot.disableSignEditScreen();
 	}
 
 	public synchronized void setSignEditScreenDisabled(boolean disabled) {
 		if (this.disableSignEditScreen != disabled) {
 			this.disableSignEditScreen = disabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized String getCustomTabName() {
-		return customTabName;
+	public String getCustomTabName() {
+		return snapshot.customTabName();
 	}
 
 	public synchronized void setCustomTabName(String name) {
 		String value = sanitizeCustomTabName(name);
 		if (!value.equals(customTabName)) {
 			customTabName = value;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized String getCustomTabIconId() {
-		return customTabIconId;
+	public String getCustomTabIconId() {
+		return snapshot.customTabIconId();
 	}
 
-	public synchronized ItemStack getCustomTabIconStack() {
-		Identifier id = Identifier.tryParse(customTabIconId);
+	public ItemStack getCustomTabIconStack() {
+		Identifier id = Identifier.tryParse(snapshot.customTabIconId());
 		if (id != null && Registries.ITEM.containsId(id)) {
 			return new ItemStack(Registries.ITEM.get(id));
 		}
@@ -293,56 +381,119 @@ public final class BuildingSupportConfig {
 			return false;
 		}
 		customTabIconId = value;
-		save();
+		commit();
 		return true;
 	}
 
-	public synchronized boolean isFixedTimeEnabled() {
-		return fixedTimeEnabled;
+	public boolean isFixedTimeEnabled() {
+		return snapshot.fixedTimeEnabled();
 	}
 
 	public synchronized void setFixedTimeEnabled(boolean enabled) {
 		if (this.fixedTimeEnabled != enabled) {
 			this.fixedTimeEnabled = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized int getFixedTimeValue() {
-		return fixedTimeValue;
+	public int getFixedTimeValue() {
+		return snapshot.fixedTimeValue();
 	}
 
 	public synchronized void setFixedTimeValue(int time) {
 		int normalized = sanitizeTimeValue(time);
 		if (this.fixedTimeValue != normalized) {
 			this.fixedTimeValue = normalized;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized boolean isFixedWeatherEnabled() {
-		return fixedWeatherEnabled;
+	public boolean isFixedWeatherEnabled() {
+		return snapshot.fixedWeatherEnabled();
 	}
 
 	public synchronized void setFixedWeatherEnabled(boolean enabled) {
 		if (this.fixedWeatherEnabled != enabled) {
 			this.fixedWeatherEnabled = enabled;
-			save();
+			commit();
 		}
 	}
 
-	public synchronized WeatherMode getFixedWeatherMode() {
-		return fixedWeatherMode;
+	public WeatherMode getFixedWeatherMode() {
+		return snapshot.fixedWeatherMode();
 	}
 
 	public synchronized void setFixedWeatherMode(WeatherMode mode) {
 		WeatherMode resolved = mode == null ? WeatherMode.CLEAR : mode;
 		if (this.fixedWeatherMode != resolved) {
 			this.fixedWeatherMode = resolved;
-			save();
+			commit();
+		}
+	}
+
+	/**
+	 * 履歴として保持する総件数を取得する。設定ファイルでのみ変更できる。
+	 */
+	public int getHistoryDepth() {
+		return snapshot.historyDepth();
+	}
+
+	/**
+	 * 履歴のうち復元済みのままメモリへ保持する件数を取得する。
+	 */
+	public int getHistoryMemoryEntries() {
+		return snapshot.historyMemoryEntries();
+	}
+
+	/**
+	 * 履歴ディレクトリ全体で保持する合計サイズの上限 (MB)。
+	 */
+	public int getHistoryRetentionMegabytes() {
+		return snapshot.historyRetentionMegabytes();
+	}
+
+	/**
+	 * 保持するワールド別履歴ファイル数の上限。
+	 */
+	public int getHistoryRetentionFiles() {
+		return snapshot.historyRetentionFiles();
+	}
+
+	/**
+	 * 最後に使われてからこの日数を過ぎたワールド別履歴は削除される。
+	 */
+	public int getHistoryRetentionDays() {
+		return snapshot.historyRetentionDays();
+	}
+
+	/**
+	 * 装備タブをトリムの模様ごとのページに分けて表示するかどうか。
+	 */
+	public boolean isArmorTabPagedModeEnabled() {
+		return snapshot.armorTabPagedMode();
+	}
+
+	public synchronized void setArmorTabPagedModeEnabled(boolean enabled) {
+		if (this.armorTabPagedMode != enabled) {
+			this.armorTabPagedMode = enabled;
+			commit();
 		}
 	}
 
+	/**
+	 * 1ティックに実行する炎の予約ティックの上限 (ディメンションごと)。0 は上限なし。
+	 */
+	public int getFireTickBudget() {
+		return snapshot.fireTickBudget();
+	}
+
+	/**
+	 * 1ティックに1チャンク内で実行する炎の予約ティックの上限。0 は上限なし。
+	 */
+	public int getFireTickChunkBudget() {
+		return snapshot.fireTickChunkBudget();
+	}
+
 	private Logger getLogger() {
 		return BuildingSupport.LOGGER;
 	}
@@ -365,6 +516,14 @@ public final class BuildingSupportConfig {
 		private boolean fixedWeatherEnabled = false;
 		private WeatherMode fixedWeatherMode = WeatherMode.CLEAR;
 		private boolean autoCarpetStringEnabled = false;
+		private int historyDepth = DEFAULT_HISTORY_DEPTH;
+		private int historyMemoryEntries = DEFAULT_HISTORY_MEMORY_ENTRIES;
+		private int historyRetentionMegabytes = DEFAULT_HISTORY_RETENTION_MEGABYTES;
+		private int historyRetentionFiles = DEFAULT_HISTORY_RETENTION_FILES;
+		private int historyRetentionDays = DEFAULT_HISTORY_RETENTION_DAYS;
+		private boolean armorTabPagedMode = false;
+		private int fireTickBudget = 0;
+		private int fireTickChunkBudget = 0;
 		private SerializableData(
 			boolean preventIceMelting,
 			boolean preventHazardFireSpread,
@@ -382,7 +541,15 @@ public final class BuildingSupportConfig {
 			int fixedTimeValue,
 			boolean fixedWeatherEnabled,
 			WeatherMode fixedWeatherMode,
-			boolean autoCarpetStringEnabled
+			boolean autoCarpetStringEnabled,
+			int historyDepth,
+			int historyMemoryEntries,
+			int historyRetentionMegabytes,
+			int historyRetentionFiles,
+			int historyRetentionDays,
+			boolean armorTabPagedMode,
+			int fireTickBudget,
+			int fireTickChunkBudget
 		) {
 			this.preventIceMelting = preventIceMelting;
 			this.preventHazardFireSpread = preventHazardFireSpread;
@@ -403,6 +570,14 @@ public final class BuildingSupportConfig {
 			this.fixedWeatherEnabled = fixedWeatherEnabled;
 			this.fixedWeatherMode = fixedWeatherMode == null ? WeatherMode.CLEAR : fixedWeatherMode;
 			this.autoCarpetStringEnabled = autoCarpetStringEnabled;
+			this.historyDepth = historyDepth;
+			this.historyMemoryEntries = historyMemoryEntries;
+			this.historyRetentionMegabytes = historyRetentionMegabytes;
+			this.historyRetentionFiles = historyRetentionFiles;
+			this.historyRetentionDays = historyRetentionDays;
+			this.armorTabPagedMode = armorTabPagedMode;
+			this.fireTickBudget = fireTickBudget;
+			this.fireTickChunkBudget = fireTickChunkBudget;
 		}
 	}
 
@@ -430,6 +605,32 @@ public final class BuildingSupportConfig {
 		return normalized;
 	}
 
+	// 古い設定ファイルには項目が無く 0 で読み込まれるため、既定値として扱う
+	private static int sanitizeHistoryMemoryEntries(int value) {
+		if (value <= 0) {
+			return DEFAULT_HISTORY_MEMORY_ENTRIES;
+		}
+		return Math.max(MIN_HISTORY_MEMORY_ENTRIES, Math.min(MAX_HISTORY_MEMORY_ENTRIES, value));
+	}
+
+	private static int sanitizeHistoryDepth(int value, int memoryEntries) {
+		if (value <= 0) {
+			value = DEFAULT_HISTORY_DEPTH;
+		}
+		return Math.max(memoryEntries, Math.min(MAX_HISTORY_DEPTH, value));
+	}
+
+	private static int sanitizeRetention(int value, int defaultValue, int max) {
+		if (value <= 0) {
+			return defaultValue;
+		}
+		return Math.min(max, value);
+	}
+
+	private static int sanitizeFireTickBudget(int value) {
+		return Math.max(0, Math.min(MAX_FIRE_TICK_BUDGET, value));
+	}
+
 	private void applyItemGroupVisibility(Map<String, Boolean> source) {
 		resetItemGroupVisibility();
 		if (source == null) {
@@ -467,6 +668,41 @@ public final class BuildingSupportConfig {
 		return id.toString();
 	}
 
+	/**
+	 * ある時点の設定値の組。生成後は変更されないため、どのスレッドからでもロックなしで参照できる。
+	 */
+	public record Snapshot(
+		boolean preventIceMelting,
+		boolean preventHazardFireSpread,
+		boolean autoLightCandles,
+		boolean autoCarpetStringEnabled,
+		boolean villageSpawnEnabled,
+		HistoryDisplayMode historyDisplayMode,
+		VillageSpawnType villageSpawnType,
+		boolean pottedPlantPickPrefersPot,
+		Map<ItemGroupOption, Boolean> itemGroupVisibility,
+		int memoListStyle,
+		boolean disableSignEditScreen,
+		String customTabName,
+		String customTabIconId,
+		boolean fixedTimeEnabled,
+		int fixedTimeValue,
+		boolean fixedWeatherEnabled,
+		WeatherMode fixedWeatherMode,
+		int historyDepth,
+		int historyMemoryEntries,
+		int historyRetentionMegabytes,
+		int historyRetentionFiles,
+		int historyRetentionDays,
+		boolean armorTabPagedMode,
+		int fireTickBudget,
+		int fireTickChunkBudget
+	) {
+		public boolean isItemGroupEnabled(ItemGroupOption option) {
+			return itemGroupVisibility.getOrDefault(option, true);
+		}
+	}
+
 	public enum HistoryDisplayMode {
 		PER_WORLD("per_world"),
 		ALL_WORLD("all_world");
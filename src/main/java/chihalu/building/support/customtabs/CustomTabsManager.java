@@ -18,16 +18,21 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import chihalu.building.support.BuildingSupport;
 import chihalu.building.support.BuildingSupportStorage;
 import chihalu.building.support.client.ClientNotificationBridge;
 import chihalu.building.support.client.accessor.ItemGroupIconAccessor;
 import chihalu.building.support.config.BuildingSupportConfig;
+import chihalu.building.support.storage.PersistenceScheduler;
 import chihalu.building.support.storage.SavedStack;
+import chihalu.building.support.storage.SavedStackDecoder;
+import chihalu.building.support.storage.SavedStackFile;
 
 /**
  * カスタムタブに登録されたスタックを管理するクラス。
@@ -35,24 +40,20 @@ import chihalu.building.support.storage.SavedStack;
 public final class CustomTabsManager {
 	public static final CustomTabsManager INSTANCE = new CustomTabsManager();
 	private static final int MAX_SAVE_ATTEMPTS = 3;
-	static {
-		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			try {
-				INSTANCE.shutdown();
-			} catch (Exception ignored) {
-			}
-		}, "UtilityToolkit-CustomTabsShutdown"));
-	}
 
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-	private final Path configPath = BuildingSupportStorage.resolve("custom_tabs.json");
+	private final Path configPath = BuildingSupportStorage.resolve("custom_tabs" + SavedStackFile.EXTENSION);
+	// 旧形式、または手動で配置した JSON。存在すれば次回読み込み時に一度だけ取り込む
+	private final Path importPath = BuildingSupportStorage.resolve("custom_tabs.json");
+	private final Path exportPath = BuildingSupportStorage.resolve("exports", "custom_tabs.json");
 	private final List<SavedStack> items = new ArrayList<>();
-	private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
-		Thread thread = new Thread(r, "UtilityToolkit-CustomTabsIO");
-		thread.setDaemon(true);
-		return thread;
-	});
-	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
+	// タブ表示用のスタック一覧。内容が変わったときだけ作り直し、それ以外は同じインスタンスを返す
+	private List<ItemStack> displayCache;
+	private final PersistenceScheduler scheduler = PersistenceScheduler.getInstance();
+	// 取り込み元 JSON。取り込んだ内容を含む書き出しが成功した時点で削除する
+	private volatile Path pendingImportCleanup;
+	// I/O スレッドで読み込み中の内容。反映されるまでカスタムタブは空として扱う
+	private CompletableFuture<LoadResult> pendingLoad;
 	private ItemGroup registeredGroup;
 
 	private CustomTabsManager() {
@@ -62,39 +63,133 @@ public final class CustomTabsManager {
 		return INSTANCE;
 	}
 
-	public void shutdown() {
-		if (shuttingDown.compareAndSet(false, true)) {
-			ioExecutor.shutdown();
-		}
+	public synchronized void reload() {
+		reloadAsync();
+		awaitLoad();
 	}
 
-	public synchronized void reload() {
+	/**
+	 * カスタムタブの内容を I/O スレッドで読み込む。読み込みが終わるまではタブにプレースホルダーだけを表示する。
+	 * 完了後は {@link #awaitLoad()} を呼ぶか、次にカスタムタブへアクセスした時点で反映される。
+	 */
+	public synchronized CompletableFuture<Void> reloadAsync() {
+		// 前の読み込みが残っていても待たずに破棄する。同じファイルを読み直すため内容は失われない
+		applyLoadIfDone();
 		items.clear();
-		if (!Files.exists(configPath)) {
+		displayCache = null;
+		// 待機中の書き出しを先に済ませ、古い内容を読み込まないようにする
+		scheduler.flush(configPath);
+		Executor loader = scheduler.isShutdown() ? Runnable::run : scheduler;
+		CompletableFuture<LoadResult> load = CompletableFuture.supplyAsync(this::readFromDisk, loader);
+		pendingLoad = load;
+		return load.thenApply(result -> null);
+	}
+
+	/**
+	 * 読み込み中の内容があれば完了を待って反映する。
+	 * 読み込み処理はこのクラスのロックを取らないため、ロックを保持したまま待っても止まらない。
+	 */
+	public synchronized void awaitLoad() {
+		CompletableFuture<LoadResult> load = pendingLoad;
+		if (load == null) {
 			return;
 		}
-		try (Reader reader = Files.newBufferedReader(configPath, StandardCharsets.UTF_8)) {
-			SerializableData data = gson.fromJson(reader, SerializableData.class);
-			if (data == null) {
-				return;
-			}
-			if (data.entries != null && !data.entries.isEmpty()) {
-				boolean needsRewrite = loadSerializedEntries(data.entries);
-				if (needsRewrite) {
-					saveAsync();
-				}
-				return;
+		pendingLoad = null;
+		LoadResult result;
+		try {
+			result = load.join();
+		} catch (CompletionException | CancellationException exception) {
+			BuildingSupport.LOGGER.error("カスタムタブの読み込みに失敗しました: {}", configPath, exception);
+			notifyLoadFailure();
+			return;
+		}
+		items.clear();
+		items.addAll(result.entries());
+		displayCache = null;
+		if (result.needsSave()) {
+			saveAsync(result.consumedImport());
+		}
+	}
+
+	// 読み込みが終わっていれば待たずに反映する
+	private void applyLoadIfDone() {
+		if (pendingLoad != null && pendingLoad.isDone()) {
+			awaitLoad();
+		}
+	}
+
+	// I/O スレッドで実行される。インスタンスの状態には触れず、読み込んだ内容だけを返す
+	private LoadResult readFromDisk() {
+		List<SavedStack> entries = new ArrayList<>();
+		if (Files.exists(importPath)) {
+			if (importJson(entries)) {
+				BuildingSupport.LOGGER.info("Imported {} custom tab entries from {}", entries.size(), importPath);
+				return new LoadResult(entries, true, importPath);
 			}
-			if (data.items == null || data.items.isEmpty()) {
-				return;
+			// 取り込めなかった JSON は退避し、既存のバイナリ形式の内容をそのまま読み込む。
+			// ここで空のまま返すと、次の保存で正しい .dat を空の内容で上書きしてしまう
+			entries.clear();
+			SavedStackFile.moveAside(importPath, ".bad");
+		}
+		if (!Files.exists(configPath)) {
+			return new LoadResult(entries, false, null);
+		}
+		try {
+			SavedStackFile.Contents contents = SavedStackFile.read(configPath);
+			entries.addAll(contents.entries());
+			if (contents.damaged()) {
+				BuildingSupport.LOGGER.warn("カスタムタブの一部を復元できませんでした: {}", configPath);
 			}
-			if (migrateLegacyItems(data.items)) {
-				saveAsync();
+			return new LoadResult(entries, contents.damaged(), null);
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("カスタムタブの読み込みに失敗しました: {}", configPath, exception);
+			notifyLoadFailure();
+			// 読めないファイル (壊れたものや新しい形式のもの) は、次の保存で上書きされる前に退避しておく
+			SavedStackFile.moveAside(configPath, ".corrupt");
+			return new LoadResult(List.of(), false, null);
+		}
+	}
+
+	/**
+	 * 現在のカスタムタブの内容を人が読める JSON として exports フォルダへ書き出す。
+	 */
+	public synchronized void exportJson() {
+		if (scheduler.isShutdown()) {
+			return;
+		}
+		awaitLoad();
+		List<SavedStack> snapshot = List.copyOf(items);
+		scheduler.execute(() -> {
+			try {
+				Files.createDirectories(exportPath.getParent());
+				try (Writer writer = Files.newBufferedWriter(exportPath, StandardCharsets.UTF_8)) {
+					gson.toJson(new SerializableData(snapshot.stream().map(SavedStack::toSerialized).toList()), writer);
+				}
+				ClientNotificationBridge.notify("message.utility-toolkit.custom_tabs.export_done");
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("カスタムタブの書き出しに失敗しました: {}", exportPath, exception);
+				ClientNotificationBridge.notify("message.utility-toolkit.custom_tabs.export_failed");
 			}
-	} catch (IOException | JsonSyntaxException exception) {
-		BuildingSupport.LOGGER.error("custom_tabs.json の読み込みに失敗しました: {}", configPath, exception);
-		notifyLoadFailure();
+		});
 	}
+
+	// JSON の内容を読み込む。バイナリ形式で保存できた時点で JSON は取り除かれる
+	private boolean importJson(List<SavedStack> target) {
+		try (Reader reader = Files.newBufferedReader(importPath, StandardCharsets.UTF_8)) {
+			SerializableData data = gson.fromJson(reader, SerializableData.class);
+			if (data != null) {
+				if (data.entries != null && !data.entries.isEmpty()) {
+					loadSerializedEntries(data.entries, target);
+				} else if (data.items != null && !data.items.isEmpty()) {
+					migrateLegacyItems(data.items, target);
+				}
+			}
+			return true;
+		} catch (IOException | JsonSyntaxException exception) {
+			BuildingSupport.LOGGER.error("custom_tabs.json の読み込みに失敗しました: {}", importPath, exception);
+			notifyLoadFailure();
+			return false;
+		}
 	}
 
 	public synchronized void registerGroupInstance(ItemGroup group) {
@@ -106,6 +201,7 @@ public final class CustomTabsManager {
 	}
 
 	public synchronized boolean addItem(Identifier id) {
+		awaitLoad();
 		if (!isValidItem(id)) {
 			return false;
 		}
@@ -115,27 +211,29 @@ public final class CustomTabsManager {
 		}
 		boolean added = addSnapshotIfAbsent(saved.get());
 		if (added) {
-			saveAsync();
+			onChanged();
 		}
 		return added;
 	}
 
 	public synchronized boolean removeItem(Identifier id) {
+		awaitLoad();
 		boolean removed = removeFirstMatching(id);
 		if (removed) {
-			saveAsync();
+			onChanged();
 		}
 		return removed;
 	}
 
 	public synchronized boolean toggleItem(Identifier id) {
+		awaitLoad();
 		if (!isValidItem(id)) {
 			return false;
 		}
 		int index = findIndexByIdentifier(id);
 		if (index >= 0) {
 			items.remove(index);
-			saveAsync();
+			onChanged();
 			return false;
 		}
 		var saved = SavedStack.fromId(id);
@@ -143,30 +241,33 @@ public final class CustomTabsManager {
 			return false;
 		}
 		items.add(saved.get());
-		saveAsync();
+		onChanged();
 		return true;
 	}
 
 	// Shift + B で選択中のスタックをトグル登録する
 	public synchronized boolean toggleItem(ItemStack stack) {
+		awaitLoad();
 		var saved = SavedStack.capture(stack);
 		if (saved.isEmpty()) {
 			return false;
 		}
 		boolean added = toggleSnapshot(saved.get());
-		saveAsync();
+		onChanged();
 		return added;
 	}
 
 	public synchronized void clear() {
+		awaitLoad();
 		if (items.isEmpty()) {
 			return;
 		}
 		items.clear();
-		saveAsync();
+		onChanged();
 	}
 
 	public synchronized List<Identifier> getItems() {
+		applyLoadIfDone();
 		return items.stream()
 			.map(SavedStack::id)
 			.toList();
@@ -181,11 +282,23 @@ public final class CustomTabsManager {
 		return stacks.isEmpty() ? new ItemStack(Items.PAPER) : stacks.get(0);
 	}
 
+	/**
+	 * カスタムタブに並べるスタック一覧を返す。
+	 * 返すリストと要素は共有キャッシュのため、呼び出し側で変更しないこと。
+	 */
 	public synchronized List<ItemStack> getDisplayStacksForTab() {
 		return getDisplayStacks();
 	}
 
 	private synchronized List<ItemStack> getDisplayStacks() {
+		applyLoadIfDone();
+		if (displayCache == null) {
+			displayCache = buildDisplayStacks();
+		}
+		return displayCache;
+	}
+
+	private List<ItemStack> buildDisplayStacks() {
 		List<ItemStack> stacks = new ArrayList<>();
 		for (SavedStack saved : items) {
 			ItemStack stack = saved.toItemStack();
@@ -220,9 +333,11 @@ public final class CustomTabsManager {
 		return id != null && Registries.ITEM.containsId(id);
 	}
 
-	private boolean loadSerializedEntries(List<SavedStack.Serialized> entries) {
+	private boolean loadSerializedEntries(List<SavedStack.Serialized> entries, List<SavedStack> target) {
 		boolean needsRewrite = false;
-		for (SavedStack.Serialized entry : entries) {
+		List<Optional<SavedStack>> decoded = SavedStackDecoder.decodeSerialized(entries);
+		for (int i = 0; i < entries.size(); i++) {
+			SavedStack.Serialized entry = entries.get(i);
 			if (entry == null) {
 				continue;
 			}
@@ -231,7 +346,7 @@ public final class CustomTabsManager {
 			if (!hasSerializedStack) {
 				needsRewrite = true;
 			}
-			if (SavedStack.fromSerialized(entry).map(items::add).orElse(false)) {
+			if (decoded.get(i).map(target::add).orElse(false)) {
 				continue;
 			}
 			needsRewrite = true;
@@ -239,7 +354,7 @@ public final class CustomTabsManager {
 		return needsRewrite;
 	}
 
-	private boolean migrateLegacyItems(List<String> legacyItems) {
+	private boolean migrateLegacyItems(List<String> legacyItems, List<SavedStack> target) {
 		boolean migrated = false;
 		for (String rawId : legacyItems) {
 			if (rawId == null || rawId.isBlank()) {
@@ -250,29 +365,25 @@ public final class CustomTabsManager {
 				BuildingSupport.LOGGER.warn("カスタムタブに追加できないIDを検出しました: {}", rawId);
 				continue;
 			}
-			if (SavedStack.fromId(id).map(items::add).orElse(false)) {
+			if (SavedStack.fromId(id).map(target::add).orElse(false)) {
 				migrated = true;
 			}
 		}
 		return migrated;
 	}
 
+	// 同一判定は SavedStack の指紋で行うため、要素ごとの比較は数値の比較だけで済む
 	private boolean addSnapshotIfAbsent(SavedStack snapshot) {
-		for (SavedStack existing : items) {
-			if (existing.isSameStack(snapshot)) {
-				return false;
-			}
+		if (items.contains(snapshot)) {
+			return false;
 		}
 		items.add(snapshot);
 		return true;
 	}
 
 	private boolean toggleSnapshot(SavedStack snapshot) {
-		for (int i = 0; i < items.size(); i++) {
-			if (items.get(i).isSameStack(snapshot)) {
-				items.remove(i);
-				return false;
-			}
+		if (items.remove(snapshot)) {
+			return false;
 		}
 		items.add(snapshot);
 		return true;
@@ -301,37 +412,41 @@ public final class CustomTabsManager {
 		return false;
 	}
 
-	private void saveAsync() {
-		if (shuttingDown.get()) {
+	// 内容を変えた処理はすべてここを通し、表示用キャッシュを捨ててから保存へ回す
+	private void onChanged() {
+		displayCache = null;
+		saveAsync(null);
+	}
+
+	/**
+	 * 現在の内容を書き出す。短時間に続いた変更は {@link PersistenceScheduler} が最後の1回にまとめる。
+	 * @param consumedImport 保存に成功したら削除する取り込み元 JSON (無ければ null)
+	 */
+	private void saveAsync(Path consumedImport) {
+		if (scheduler.isShutdown()) {
 			return;
 		}
+		if (consumedImport != null) {
+			pendingImportCleanup = consumedImport;
+		}
 		List<SavedStack> snapshot = List.copyOf(items);
-		ioExecutor.execute(() -> writeSnapshot(snapshot, 0));
+		scheduler.schedule(configPath, () -> writeSnapshot(snapshot, 0));
 	}
 
 	private void writeSnapshot(List<SavedStack> snapshot, int attempt) {
-		List<SavedStack.Serialized> serialized = snapshot.stream()
-			.map(SavedStack::toSerialized)
-			.toList();
-		SerializableData data = new SerializableData(serialized);
 		try {
-			Files.createDirectories(configPath.getParent());
-			try (Writer writer = Files.newBufferedWriter(configPath, StandardCharsets.UTF_8)) {
-				gson.toJson(data, writer);
+			SavedStackFile.write(configPath, null, snapshot);
+			Path consumedImport = pendingImportCleanup;
+			if (consumedImport != null) {
+				Files.deleteIfExists(consumedImport);
+				pendingImportCleanup = null;
 			}
 		} catch (IOException exception) {
-			BuildingSupport.LOGGER.error("custom_tabs.json の保存に失敗しました: {}", configPath, exception);
-			if (attempt < MAX_SAVE_ATTEMPTS - 1 && !shuttingDown.get()) {
+			BuildingSupport.LOGGER.error("カスタムタブの保存に失敗しました: {}", configPath, exception);
+			if (attempt < MAX_SAVE_ATTEMPTS - 1 && !scheduler.isShutdown()) {
 				notifySaveFailure("message.utility-toolkit.custom_tabs.save_failed.retry");
-				ioExecutor.execute(() -> {
-					try {
-						Thread.sleep((attempt + 1) * 1000L);
-					} catch (InterruptedException interruptedException) {
-						Thread.currentThread().interrupt();
-						return;
-					}
-					writeSnapshot(snapshot, attempt + 1);
-				});
+				// 再試行を待つ間に新しい内容が予約されていれば、そちらの書き出しに任せる
+				scheduler.scheduleIfAbsent(configPath, () -> writeSnapshot(snapshot, attempt + 1), (attempt + 1) * 1000L);
 			} else {
 				notifySaveFailure("message.utility-toolkit.custom_tabs.save_failed.final");
 			}
@@ -346,6 +461,9 @@ public final class CustomTabsManager {
 		ClientNotificationBridge.notify("message.utility-toolkit.custom_tabs.load_failed");
 	}
 
+	private record LoadResult(List<SavedStack> entries, boolean needsSave, Path consumedImport) {
+	}
+
 	private static final class SerializableData {
 		private List<String> items;
 		private List<SavedStack.Serialized> entries;
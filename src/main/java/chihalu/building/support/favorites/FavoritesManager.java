@@ -18,14 +18,19 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import chihalu.building.support.BuildingSupport;
 import chihalu.building.support.BuildingSupportStorage;
 import chihalu.building.support.client.ClientNotificationBridge;
+import chihalu.building.support.storage.PersistenceScheduler;
 import chihalu.building.support.storage.SavedStack;
+import chihalu.building.support.storage.SavedStackDecoder;
+import chihalu.building.support.storage.SavedStackFile;
 
 /**
  * Favorites tab manager for saved items.
@@ -33,24 +38,20 @@ import chihalu.building.support.storage.SavedStack;
 public final class FavoritesManager {
 	private static final FavoritesManager INSTANCE = new FavoritesManager();
 	private static final int MAX_SAVE_ATTEMPTS = 3;
-	static {
-		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			try {
-				INSTANCE.shutdown();
-			} catch (Exception ignored) {
-			}
-		}, "UtilityToolkit-FavoritesShutdown"));
-	}
 
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-	private final Path configPath = BuildingSupportStorage.resolve("favorites.json");
+	private final Path configPath = BuildingSupportStorage.resolve("favorites" + SavedStackFile.EXTENSION);
+	// 旧形式、または手動で配置した JSON。存在すれば次回読み込み時に一度だけ取り込む
+	private final Path importPath = BuildingSupportStorage.resolve("favorites.json");
+	private final Path exportPath = BuildingSupportStorage.resolve("exports", "favorites.json");
 	private final List<SavedStack> favorites = new ArrayList<>();
-	private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
-		Thread thread = new Thread(r, "UtilityToolkit-FavoritesIO");
-		thread.setDaemon(true);
-		return thread;
-	});
-	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
+	// タブ表示用のスタック一覧。内容が変わったときだけ作り直し、それ以外は同じインスタンスを返す
+	private List<ItemStack> displayCache;
+	private final PersistenceScheduler scheduler = PersistenceScheduler.getInstance();
+	// 取り込み元 JSON。取り込んだ内容を含む書き出しが成功した時点で削除する
+	private volatile Path pendingImportCleanup;
+	// I/O スレッドで読み込み中の内容。反映されるまでお気に入りは空として扱う
+	private CompletableFuture<LoadResult> pendingLoad;
 
 	private FavoritesManager() {
 	}
@@ -59,78 +60,184 @@ public final class FavoritesManager {
 		return INSTANCE;
 	}
 
-	public void shutdown() {
-		if (shuttingDown.compareAndSet(false, true)) {
-			ioExecutor.shutdown();
-		}
+	public synchronized void reload() {
+		reloadAsync();
+		awaitLoad();
 	}
 
-	public synchronized void reload() {
+	/**
+	 * お気に入りを I/O スレッドで読み込む。読み込みが終わるまではタブにプレースホルダーだけを表示する。
+	 * 完了後は {@link #awaitLoad()} を呼ぶか、次にお気に入りへアクセスした時点で反映される。
+	 */
+	public synchronized CompletableFuture<Void> reloadAsync() {
+		// 前の読み込みが残っていても待たずに破棄する。同じファイルを読み直すため内容は失われない
+		applyLoadIfDone();
 		favorites.clear();
-		if (!Files.exists(configPath)) {
+		displayCache = null;
+		// 待機中の書き出しを先に済ませ、古い内容を読み込まないようにする
+		scheduler.flush(configPath);
+		Executor loader = scheduler.isShutdown() ? Runnable::run : scheduler;
+		CompletableFuture<LoadResult> load = CompletableFuture.supplyAsync(this::readFromDisk, loader);
+		pendingLoad = load;
+		return load.thenApply(result -> null);
+	}
+
+	/**
+	 * 読み込み中の内容があれば完了を待って反映する。
+	 * 読み込み処理はこのクラスのロックを取らないため、ロックを保持したまま待っても止まらない。
+	 */
+	public synchronized void awaitLoad() {
+		CompletableFuture<LoadResult> load = pendingLoad;
+		if (load == null) {
 			return;
 		}
-		try (Reader reader = Files.newBufferedReader(configPath, StandardCharsets.UTF_8)) {
-			SerializableData data = gson.fromJson(reader, SerializableData.class);
-			if (data == null) {
-				return;
-			}
-			if (data.entries != null && !data.entries.isEmpty()) {
-				for (SavedStack.Serialized entry : data.entries) {
-					SavedStack.fromSerialized(entry).ifPresent(favorites::add);
-				}
-				return;
+		pendingLoad = null;
+		LoadResult result;
+		try {
+			result = load.join();
+		} catch (CompletionException | CancellationException exception) {
+			BuildingSupport.LOGGER.error("Failed to load favorites data: {}", configPath, exception);
+			notifyLoadFailure();
+			return;
+		}
+		favorites.clear();
+		favorites.addAll(result.entries());
+		displayCache = null;
+		if (result.needsSave()) {
+			saveAsync(result.consumedImport());
+		}
+	}
+
+	// 読み込みが終わっていれば待たずに反映する
+	private void applyLoadIfDone() {
+		if (pendingLoad != null && pendingLoad.isDone()) {
+			awaitLoad();
+		}
+	}
+
+	// I/O スレッドで実行される。インスタンスの状態には触れず、読み込んだ内容だけを返す
+	private LoadResult readFromDisk() {
+		List<SavedStack> entries = new ArrayList<>();
+		if (Files.exists(importPath)) {
+			if (importJson(entries)) {
+				BuildingSupport.LOGGER.info("Imported {} favorites from {}", entries.size(), importPath);
+				return new LoadResult(entries, true, importPath);
 			}
-			if (data.favorites == null) {
-				return;
+			// 取り込めなかった JSON は退避し、既存のバイナリ形式の内容をそのまま読み込む。
+			// ここで空のまま返すと、次の保存で正しい .dat を空の内容で上書きしてしまう
+			entries.clear();
+			SavedStackFile.moveAside(importPath, ".bad");
+		}
+		if (!Files.exists(configPath)) {
+			return new LoadResult(entries, false, null);
+		}
+		try {
+			SavedStackFile.Contents contents = SavedStackFile.read(configPath);
+			entries.addAll(contents.entries());
+			if (contents.damaged()) {
+				BuildingSupport.LOGGER.warn("Some favorites could not be restored: {}", configPath);
 			}
-			for (String entry : data.favorites) {
-				if (entry == null || entry.isBlank()) {
-					continue;
-				}
-				Identifier id = Identifier.tryParse(entry.trim());
-				if (id == null) {
-					BuildingSupport.LOGGER.warn("Ignored malformed item ID: {}", entry);
-					continue;
+			return new LoadResult(entries, contents.damaged(), null);
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to load favorites data: {}", configPath, exception);
+			notifyLoadFailure();
+			// 読めないファイル (壊れたものや新しい形式のもの) は、次の保存で上書きされる前に退避しておく
+			SavedStackFile.moveAside(configPath, ".corrupt");
+			return new LoadResult(List.of(), false, null);
+		}
+	}
+
+	/**
+	 * 現在のお気に入りを人が読める JSON として exports フォルダへ書き出す。
+	 */
+	public synchronized void exportJson() {
+		if (scheduler.isShutdown()) {
+			return;
+		}
+		awaitLoad();
+		List<SavedStack> snapshot = List.copyOf(favorites);
+		scheduler.execute(() -> {
+			try {
+				Files.createDirectories(exportPath.getParent());
+				try (Writer writer = Files.newBufferedWriter(exportPath, StandardCharsets.UTF_8)) {
+					gson.toJson(new SerializableData(snapshot.stream().map(SavedStack::toSerialized).toList()), writer);
 				}
-				if (Registries.ITEM.containsId(id)) {
-					SavedStack.fromId(id).ifPresent(favorites::add);
-				} else {
-					BuildingSupport.LOGGER.warn("Ignored missing item ID: {}", entry);
+				ClientNotificationBridge.notify("message.utility-toolkit.favorites.export_done");
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to export favorites data: {}", exportPath, exception);
+				ClientNotificationBridge.notify("message.utility-toolkit.favorites.export_failed");
+			}
+		});
+	}
+
+	// JSON の内容を読み込む。バイナリ形式で保存できた時点で JSON は取り除かれる
+	private boolean importJson(List<SavedStack> target) {
+		try (Reader reader = Files.newBufferedReader(importPath, StandardCharsets.UTF_8)) {
+			SerializableData data = gson.fromJson(reader, SerializableData.class);
+			if (data != null) {
+				if (data.entries != null && !data.entries.isEmpty()) {
+					for (Optional<SavedStack> saved : SavedStackDecoder.decodeSerialized(data.entries)) {
+						saved.ifPresent(target::add);
+					}
+				} else if (data.favorites != null) {
+					loadLegacyIds(data.favorites, target);
 				}
 			}
+			return true;
 		} catch (IOException | JsonSyntaxException exception) {
-			BuildingSupport.LOGGER.error("Failed to load favorites data: {}", configPath, exception);
+			BuildingSupport.LOGGER.error("Failed to load favorites data: {}", importPath, exception);
 			notifyLoadFailure();
+			return false;
+		}
+	}
+
+	private static void loadLegacyIds(List<String> ids, List<SavedStack> target) {
+		for (String entry : ids) {
+			if (entry == null || entry.isBlank()) {
+				continue;
+			}
+			Identifier id = Identifier.tryParse(entry.trim());
+			if (id == null) {
+				BuildingSupport.LOGGER.warn("Ignored malformed item ID: {}", entry);
+				continue;
+			}
+			if (Registries.ITEM.containsId(id)) {
+				SavedStack.fromId(id).ifPresent(target::add);
+			} else {
+				BuildingSupport.LOGGER.warn("Ignored missing item ID: {}", entry);
+			}
 		}
 	}
 
 	public synchronized boolean addFavorite(Identifier id) {
+		awaitLoad();
 		var saved = SavedStack.fromId(id);
 		if (saved.isEmpty()) {
 			return false;
 		}
 		boolean added = addSnapshotIfAbsent(saved.get());
 		if (added) {
-			saveAsync();
+			onChanged();
 		}
 		return added;
 	}
 
 	public synchronized boolean removeFavorite(Identifier id) {
+		awaitLoad();
 		boolean removed = removeFirstMatching(id);
 		if (removed) {
-			saveAsync();
+			onChanged();
 		}
 		return removed;
 	}
 
 	public synchronized boolean toggleFavorite(Identifier id) {
+		awaitLoad();
 		Iterator<SavedStack> iterator = favorites.iterator();
 		while (iterator.hasNext()) {
 			if (iterator.next().id().equals(id)) {
 				iterator.remove();
-				saveAsync();
+				onChanged();
 				return false;
 			}
 		}
@@ -139,50 +246,70 @@ public final class FavoritesManager {
 			return false;
 		}
 		favorites.add(saved.get());
-		saveAsync();
+		onChanged();
 		return true;
 	}
 
 	// Shift+B で現在のスロットをお気に入りに登録/解除する
 	public synchronized boolean toggleFavorite(ItemStack stack) {
+		awaitLoad();
 		var saved = SavedStack.capture(stack);
 		if (saved.isEmpty()) {
 			return false;
 		}
 		boolean added = toggleSnapshot(saved.get());
-		saveAsync();
+		onChanged();
 		return added;
 	}
 
 	public synchronized void clearFavorites() {
+		awaitLoad();
 		if (favorites.isEmpty()) {
 			return;
 		}
 		favorites.clear();
-		saveAsync();
+		onChanged();
 	}
 
 	public synchronized boolean isFavorite(Identifier id) {
+		applyLoadIfDone();
 		return favorites.stream().anyMatch(saved -> saved.id().equals(id));
 	}
 
 	public synchronized List<Identifier> getFavoriteIds() {
+		applyLoadIfDone();
 		return favorites.stream()
 			.map(SavedStack::id)
 			.toList();
 	}
 
+	// キャッシュ済みの先頭要素をそのまま返す (変更しないこと)
 	public synchronized ItemStack getIconStack() {
-		for (SavedStack saved : favorites) {
-			ItemStack stack = saved.toItemStack();
-			if (!stack.isEmpty()) {
-				return stack;
-			}
-		}
-		return new ItemStack(Blocks.AMETHYST_CLUSTER);
+		return getDisplayStacksForTab().get(0);
 	}
 
+	/**
+	 * お気に入りのスタック一覧を返す。お気に入りが無い場合は空のリスト。
+	 * 返すリストと要素は共有キャッシュのため、呼び出し側で変更しないこと。
+	 */
 	public synchronized List<ItemStack> getFavoriteStacks() {
+		List<ItemStack> stacks = getDisplayStacksForTab();
+		return favorites.isEmpty() ? List.of() : stacks;
+	}
+
+	/**
+	 * お気に入りタブに並べるスタック一覧を返す。空の場合はプレースホルダーを1つだけ含む。
+	 * 返すリストと要素は共有キャッシュのため、呼び出し側で変更しないこと。
+	 */
+	public synchronized List<ItemStack> getDisplayStacksForTab() {
+		applyLoadIfDone();
+		if (displayCache == null) {
+			displayCache = buildDisplayStacks();
+		}
+		return displayCache;
+	}
+
+	private List<ItemStack> buildDisplayStacks() {
 		List<ItemStack> stacks = new ArrayList<>();
 		for (SavedStack saved : favorites) {
 			ItemStack stack = saved.toItemStack();
@@ -190,15 +317,10 @@ public final class FavoritesManager {
 				stacks.add(stack);
 			}
 		}
-		return stacks;
-	}
-
-	public synchronized List<ItemStack> getDisplayStacksForTab() {
-		List<ItemStack> stacks = getFavoriteStacks();
 		if (stacks.isEmpty()) {
 			stacks.add(new ItemStack(Blocks.AMETHYST_CLUSTER));
 		}
-		return stacks;
+		return List.copyOf(stacks);
 	}
 
 	public synchronized void populate(ItemGroup.Entries entries) {
@@ -207,22 +329,18 @@ public final class FavoritesManager {
 		}
 	}
 
+	// 同一判定は SavedStack の指紋で行うため、要素ごとの比較は数値の比較だけで済む
 	private boolean addSnapshotIfAbsent(SavedStack snapshot) {
-		for (SavedStack existing : favorites) {
-			if (existing.isSameStack(snapshot)) {
-				return false;
-			}
+		if (favorites.contains(snapshot)) {
+			return false;
 		}
 		favorites.add(snapshot);
 		return true;
 	}
 
 	private boolean toggleSnapshot(SavedStack snapshot) {
-		for (int i = 0; i < favorites.size(); i++) {
-			if (favorites.get(i).isSameStack(snapshot)) {
-				favorites.remove(i);
-				return false;
-			}
+		if (favorites.remove(snapshot)) {
+			return false;
 		}
 		favorites.add(snapshot);
 		return true;
@@ -239,37 +357,41 @@ public final class FavoritesManager {
 		return false;
 	}
 
-	private void saveAsync() {
-		if (shuttingDown.get()) {
+	// 内容を変えた処理はすべてここを通し、表示用キャッシュを捨ててから保存へ回す
+	private void onChanged() {
+		displayCache = null;
+		saveAsync(null);
+	}
+
+	/**
+	 * 現在の内容を書き出す。短時間に続いた変更は {@link PersistenceScheduler} が最後の1回にまとめる。
+	 * @param consumedImport 保存に成功したら削除する取り込み元 JSON (無ければ null)
+	 */
+	private void saveAsync(Path consumedImport) {
+		if (scheduler.isShutdown()) {
 			return;
 		}
+		if (consumedImport != null) {
+			pendingImportCleanup = consumedImport;
+		}
 		List<SavedStack> snapshot = List.copyOf(favorites);
-		ioExecutor.execute(() -> writeSnapshot(snapshot, 0));
+		scheduler.schedule(configPath, () -> writeSnapshot(snapshot, 0));
 	}
 
 	private void writeSnapshot(List<SavedStack> snapshot, int attempt) {
-		List<SavedStack.Serialized> serialized = snapshot.stream()
-			.map(SavedStack::toSerialized)
-			.toList();
-		SerializableData data = new SerializableData(serialized);
 		try {
-			Files.createDirectories(configPath.getParent());
-			try (Writer writer = Files.newBufferedWriter(configPath, StandardCharsets.UTF_8)) {
-				gson.toJson(data, writer);
+			SavedStackFile.write(configPath, null, snapshot);
+			Path consumedImport = pendingImportCleanup;
+			if (consumedImport != null) {
+				Files.deleteIfExists(consumedImport);
+				pendingImportCleanup = null;
 			}
 		} catch (IOException exception) {
 			BuildingSupport.LOGGER.error("Failed to save favorites data: {}", configPath, exception);
-			if (attempt < MAX_SAVE_ATTEMPTS - 1 && !shuttingDown.get()) {
+			if (attempt < MAX_SAVE_ATTEMPTS - 1 && !scheduler.isShutdown()) {
 				notifySaveFailure("message.utility-toolkit.favorites.save_failed.retry");
-				ioExecutor.execute(() -> {
-					try {
-						Thread.sleep((attempt + 1) * 1000L);
-					} catch (InterruptedException interruptedException) {
-						Thread.currentThread().interrupt();
-						return;
-					}
-					writeSnapshot(snapshot, attempt + 1);
-				});
+				// 再試行を待つ間に新しい内容が予約されていれば、そちらの書き出しに任せる
+				scheduler.scheduleIfAbsent(configPath, () -> writeSnapshot(snapshot, attempt + 1), (attempt + 1) * 1000L);
 			} else {
 				notifySaveFailure("message.utility-toolkit.favorites.save_failed.final");
 			}
@@ -284,6 +406,9 @@ public final class FavoritesManager {
 		ClientNotificationBridge.notify("message.utility-toolkit.favorites.load_failed");
 	}
 
+	private record LoadResult(List<SavedStack> entries, boolean needsSave, Path consumedImport) {
+	}
+
 	private static final class SerializableData {
 		private List<String> favorites;
 		private List<SavedStack.Serialized> entries;
@@ -0,0 +1,176 @@
+package chihalu.building.support.history;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import chihalu.building.support.storage.SavedStack;
+
+/**
+ * スタックの識別キーで索引付けした LRU 形式の履歴。
+ * 同じスタックの再使用は線形探索せずに先頭へ移動でき、重複も発生しない。
+ * 直近の一定件数だけを復元済みのまま保持し、それより古いものは {@link HistorySpillStore} へ退避する。
+ */
+final class HistoryEntries {
+	private int capacity;
+	private int spillCapacity;
+	private HistorySpillStore spill;
+	// アクセス順の LinkedHashMap は末尾が最も新しい要素になる
+	private final LinkedHashMap<String, SavedStack> entries;
+	// 内容が変わるたびに進める世代番号。表示用キャッシュの無効化判定に使う
+	private int version;
+
+	HistoryEntries(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SavedStack> eldest) {
+				if (size() <= HistoryEntries.this.capacity) {
+					return false;
+				}
+				spillEldest(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * メモリに保持する件数と、ディスクへ退避する件数の上限を設定する。
+	 */
+	void setLimits(int capacity, int spillCapacity) {
+		this.capacity = Math.max(1, capacity);
+		this.spillCapacity = Math.max(0, spillCapacity);
+		if (spill != null) {
+			spill.trimTo(this.spillCapacity);
+		}
+		version++;
+	}
+
+	/**
+	 * 退避先ストアを差し替え、その索引を読み込む。
+	 */
+	void attachSpill(HistorySpillStore store) {
+		this.spill = store;
+		if (store != null) {
+			store.load();
+			store.trimTo(spillCapacity);
+		}
+		version++;
+	}
+
+	HistorySpillStore spill() {
+		return spill;
+	}
+
+	/**
+	 * スタックを最新の履歴として登録する。既に存在する場合は位置だけを更新する。
+	 */
+	void push(SavedStack snapshot) {
+		String key = snapshot.uniqueKey();
+		if (spill != null) {
+			spill.remove(key);
+		}
+		entries.put(key, snapshot);
+		version++;
+	}
+
+	void clear() {
+		entries.clear();
+		version++;
+	}
+
+	/**
+	 * メモリ上と退避分のどちらかが変わるたびに変化する世代番号。
+	 */
+	long version() {
+		int spillVersion = spill == null ? 0 : spill.version();
+		return ((long) version << 32) | (spillVersion & 0xFFFFFFFFL);
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	int spilledSize() {
+		return spill == null ? 0 : spill.size();
+	}
+
+	/**
+	 * 新しい順に並べた、メモリ上の履歴のコピーを返す。
+	 */
+	List<SavedStack> newestFirst() {
+		return new ArrayList<>(entries.sequencedValues().reversed());
+	}
+
+	/**
+	 * 退避分の先頭から pages ページ分を新しい順に復元して返す。
+	 */
+	List<SavedStack> spilledPages(int pages) {
+		if (spill == null || pages <= 0) {
+			return List.of();
+		}
+		List<SavedStack> result = new ArrayList<>();
+		for (int page = 0; page < pages; page++) {
+			List<SavedStack> decoded = spill.readPage(page);
+			if (decoded.isEmpty()) {
+				break;
+			}
+			result.addAll(decoded);
+		}
+		return result;
+	}
+
+	/**
+	 * 退避分の先頭から pages ページ分のうち、復元済みのものだけを新しい順に返す。
+	 * 未復元のページに当たった時点で打ち切り、そのページを I/O スレッドで先読みさせる。
+	 */
+	List<SavedStack> cachedSpilledPages(int pages, Runnable onLoaded) {
+		if (spill == null || pages <= 0) {
+			return List.of();
+		}
+		List<SavedStack> result = new ArrayList<>();
+		for (int page = 0; page < pages; page++) {
+			List<SavedStack> cached = spill.cachedPage(page);
+			if (cached == null) {
+				spill.prefetch(page, onLoaded);
+				break;
+			}
+			if (cached.isEmpty()) {
+				break;
+			}
+			result.addAll(cached);
+		}
+		return result;
+	}
+
+	/**
+	 * 先頭から pages ページ分がすべて復元済みかを返す。
+	 */
+	boolean isSpilledPagesCached(int pages) {
+		if (spill == null) {
+			return true;
+		}
+		for (int page = 0; page < pages; page++) {
+			if (spill.cachedPage(page) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 先読みしたページがキャッシュへ入るたびに変化する番号。
+	 */
+	int loadedSpillPages() {
+		return spill == null ? 0 : spill.loadedPageCount();
+	}
+
+	private void spillEldest(SavedStack eldest) {
+		if (spill == null || spillCapacity <= 0) {
+			return;
+		}
+		spill.pushNewest(eldest);
+		spill.trimTo(spillCapacity);
+	}
+}
@@ -6,9 +6,11 @@ import com.google.gson.JsonSyntaxException;
 import net.minecraft.item.ItemGroup;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
@@ -16,56 +18,79 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
-import java.util.ArrayDeque;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import chihalu.building.support.BuildingSupport;
+import chihalu.building.support.client.ClientNotificationBridge;
 import chihalu.building.support.config.BuildingSupportConfig;
 import chihalu.building.support.BuildingSupportStorage;
+import chihalu.building.support.storage.PersistenceScheduler;
 import chihalu.building.support.storage.SavedStack;
+import chihalu.building.support.storage.SavedStackDecoder;
+import chihalu.building.support.storage.SavedStackFile;
 
 public final class HistoryManager {
 	private static final HistoryManager INSTANCE = new HistoryManager();
-	static {
-		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			try {
-				INSTANCE.shutdown();
-			} catch (Exception ignored) {
-			}
-		}, "UtilityToolkit-HistoryShutdown"));
-	}
-	private static final int MAX_HISTORY = 64;
 	private static final String DEFAULT_WORLD_KEY = "unknown_world";
-	private static final String ALL_WORLD_FILE_NAME = "all_world.json";
+	private static final String ALL_WORLD_BASE_NAME = "all_world";
+	private static final String ALL_WORLD_FILE_NAME = ALL_WORLD_BASE_NAME + SavedStackFile.EXTENSION;
+	// 旧バージョンの JSON 形式。見つかった場合は一度だけ読み込み、バイナリ形式へ移行する
+	private static final String LEGACY_EXTENSION = ".json";
+	private static final String HEADER_WORLD_KEY = "worldKey";
 	private static final String GLOBAL_HISTORY_WORLD_KEY = "global_history";
+	private static final String JOURNAL_EXTENSION = ".journal";
+	private static final String SPILL_EXTENSION = ".spill";
+	private static final String HISTORY_FILE_GLOB = "*.{dat,json}";
+	// ジャーナルにこの件数が溜まったらスナップショットへ畳み込む
+	private static final int JOURNAL_COMPACT_THRESHOLD = 256;
 
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	// ジャーナルは1行1レコードで追記するため整形しない
+	private final Gson journalGson = new GsonBuilder().create();
 	private final Path historyDir = BuildingSupportStorage.resolve("history");
+	private final Path exportDir = BuildingSupportStorage.resolve("exports", "history");
 
-	private final Deque<SavedStack> recentItems = new ArrayDeque<>();
+	private HistoryEntries recentItems = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+	// I/O スレッドで読み込み中のワールド履歴。完了するまで recentItems は空のプレースホルダーになる
+	private CompletableFuture<HistoryEntries> pendingActiveLoad;
+	// 読み込み中に記録された使用履歴。読み込み完了後に順に反映する
+	private final List<SavedStack> recordedWhileLoading = new ArrayList<>();
 	private Path activeHistoryPath = getWorldHistoryPath(DEFAULT_WORLD_KEY);
 	private String activeWorldKey = DEFAULT_WORLD_KEY;
-	// 履歴ファイルの読み書きをメインスレッドから切り離すための専用I/Oスレッド
-	private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
-		Thread thread = new Thread(r, "UtilityToolkit-HistoryIO");
-		thread.setDaemon(true);
-		return thread;
-	});
-	private final AtomicBoolean executorShutdown = new AtomicBoolean(false);
-	// 全ワールド履歴をキャッシュして繰り返しのディスクI/Oを避ける
-	private final Object globalCacheLock = new Object();
-	private Deque<SavedStack> globalHistoryCache = new ArrayDeque<>();
-	private FileTime globalCacheTimestamp = FileTime.fromMillis(0L);
-	private boolean globalCacheInitialized = false;
+	// 履歴ファイルの読み書きをメインスレッドから切り離すための共有I/Oスレッド
+	private final PersistenceScheduler scheduler = PersistenceScheduler.getInstance();
+	// 全ワールド履歴はメモリ上の内容を正とし、ディスクへは書き出すだけにする
+	private HistoryEntries globalHistory = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+	private boolean globalHistoryLoaded = false;
+	// I/O スレッドで読み込み中の全ワールド履歴と、その間に記録された使用履歴
+	private CompletableFuture<HistoryEntries> pendingGlobalLoad;
+	private final List<SavedStack> recordedWhileGlobalLoading = new ArrayList<>();
+	// タブ表示用のスタック一覧。履歴か表示モードが変わったときだけ作り直す
+	private List<ItemStack> displayCache = List.of();
+	private HistoryEntries displayCacheSource;
+	private long displayCacheVersion = -1L;
+	private int displayCachePages = -1;
+	private int displayCacheLoadedPages = -1;
+	// 退避ページの先読みが終わったときに呼ぶ処理 (I/O スレッドから呼ばれる)。クライアントがタブの作り直しを登録する
+	private volatile Runnable spillPageListener = () -> {};
+	// 履歴タブで展開済みの退避ページ数。スクロールで末尾に達するたびに1ページずつ増やす
+	private int visibleSpillPages = 0;
+	// スナップショット未反映のジャーナル件数 (履歴ファイルごと)
+	private final Map<Path, Integer> journalCounts = new ConcurrentHashMap<>();
+	// 一覧表示用の索引。履歴ファイルを書き込むたびに件数と最終使用時刻を更新する
+	private final HistoryManifest manifest = new HistoryManifest(historyDir, scheduler, this::measureHistoryFiles);
 
 	private HistoryManager() {
 	}
@@ -74,36 +99,182 @@ public final class HistoryManager {
 		return INSTANCE;
 	}
 
-	public void shutdown() {
-		if (executorShutdown.compareAndSet(false, true)) {
-			ioExecutor.shutdown();
-		}
-	}
-
 	public synchronized void initialize() {
 		try {
 			Files.createDirectories(historyDir);
 		} catch (IOException exception) {
 			BuildingSupport.LOGGER.error("Failed to prepare history directory: {}", historyDir, exception);
 		}
-		setActiveWorldKey(null);
+		// 全ワールド履歴と既定の履歴は I/O スレッドで読み込み、初めて参照した時点で反映する
+		loadGlobalHistoryAsync();
+		setActiveWorldKeyAsync(null);
 	}
 
 	public synchronized void setActiveWorldKey(String worldKey) {
-		String sanitized = sanitize(worldKey);
-		activeHistoryPath = getWorldHistoryPath(sanitized);
+		setActiveWorldKeyAsync(worldKey);
+		awaitActiveLoad();
+	}
+
+	/**
+	 * 使用中のワールドを切り替え、その履歴を I/O スレッドで読み込む。
+	 * 読み込みが終わるまで履歴タブは空のプレースホルダーを表示する。
+	 * 完了後は {@link #awaitActiveLoad()} を呼ぶか、次に履歴へアクセスした時点で反映される。
+	 */
+	public synchronized CompletableFuture<Void> setActiveWorldKeyAsync(String worldKey) {
+		Path previousPath = activeHistoryPath;
+		Path nextPath = getWorldHistoryPath(sanitize(worldKey));
+		if (!nextPath.equals(previousPath)) {
+			// 前のワールドの読み込みが残っていても待たず、その間の記録は読み込み完了後に前のワールドへ反映させる
+			detachPendingActiveLoad(previousPath, activeWorldKey);
+		}
+		activeHistoryPath = nextPath;
 		this.activeWorldKey = worldKey == null || worldKey.isBlank() ? DEFAULT_WORLD_KEY : worldKey;
-		reloadActive();
+		CompletableFuture<Void> load = reloadActiveAsync();
+		// ワールドの出入りに合わせて、保持上限を超えた古いワールド履歴を片付ける
+		enforceRetention(previousPath);
+		return load;
 	}
 
 	public synchronized void reloadActive() {
-		recentItems.clear();
-		recentItems.addAll(loadHistory(activeHistoryPath));
+		reloadActiveAsync();
+		awaitActiveLoad();
+	}
+
+	/**
+	 * 使用中のワールド履歴を I/O スレッドで読み直す。
+	 * 前の読み込みが残っていれば待たずに破棄し、その間の記録は新しい読み込みの完了後に反映する (同じファイルなので取りこぼさない)。
+	 */
+	public synchronized CompletableFuture<Void> reloadActiveAsync() {
+		applyActiveLoadIfDone();
+		Path path = activeHistoryPath;
+		HistoryEntries loaded = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+		applyLimits(loaded);
+		recentItems = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+		visibleSpillPages = 0;
+		// 待機中のスナップショットを先に積み、同じ I/O スレッドで実行される追記や書き出しを読み込み前に反映させる
+		scheduler.flush(path);
+		Executor loader = scheduler.isShutdown() ? Runnable::run : scheduler;
+		CompletableFuture<HistoryEntries> load = CompletableFuture.supplyAsync(() -> {
+			loaded.attachSpill(new HistorySpillStore(getSpillPath(path), scheduler));
+			readHistoryFromDisk(path, loaded);
+			return loaded;
+		}, loader);
+		pendingActiveLoad = load;
+		return load.thenApply(result -> null);
+	}
+
+	/**
+	 * 読み込み中のワールド履歴があれば完了を待って反映する。
+	 * 読み込み処理はこのクラスのロックを取らないため、ロックを保持したまま待っても止まらない。
+	 */
+	public synchronized void awaitActiveLoad() {
+		CompletableFuture<HistoryEntries> load = pendingActiveLoad;
+		if (load == null) {
+			return;
+		}
+		pendingActiveLoad = null;
+		HistoryEntries loaded;
+		try {
+			loaded = load.join();
+		} catch (CompletionException | CancellationException exception) {
+			BuildingSupport.LOGGER.error("Failed to load history data: {}", activeHistoryPath, exception);
+			loaded = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+			applyLimits(loaded);
+		}
+		recentItems = loaded;
+		List<SavedStack> recorded = List.copyOf(recordedWhileLoading);
+		recordedWhileLoading.clear();
+		for (SavedStack snapshot : recorded) {
+			recordActive(snapshot);
+		}
+	}
+
+	/**
+	 * 別のワールドへ切り替える前に、前のワールドの読み込みを手放す。
+	 * 読み込み中に記録した使用履歴は、読み込みが終わった I/O スレッド上で前のワールドの履歴へ積み、そのファイルへ追記する。
+	 * 手放した履歴はほかから参照されないため、このクラスのロックは取らない。
+	 */
+	private void detachPendingActiveLoad(Path path, String worldKey) {
+		CompletableFuture<HistoryEntries> load = pendingActiveLoad;
+		if (load == null) {
+			return;
+		}
+		if (load.isDone()) {
+			awaitActiveLoad();
+			return;
+		}
+		pendingActiveLoad = null;
+		List<SavedStack> recorded = List.copyOf(recordedWhileLoading);
+		recordedWhileLoading.clear();
+		if (recorded.isEmpty()) {
+			return;
+		}
+		load.whenComplete((loaded, throwable) -> {
+			HistoryEntries target = loaded;
+			if (target == null) {
+				BuildingSupport.LOGGER.error("Failed to load history data: {}", path, throwable);
+				target = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+				applyLimits(target);
+			}
+			for (SavedStack snapshot : recorded) {
+				target.push(snapshot);
+				appendHistoryAsync(path, target, worldKey, snapshot);
+			}
+		});
+	}
+
+	// 読み込みが終わっていれば待たずに反映する
+	private void applyActiveLoadIfDone() {
+		if (pendingActiveLoad != null && pendingActiveLoad.isDone()) {
+			awaitActiveLoad();
+		}
+	}
+
+	/**
+	 * 履歴タブが末尾までスクロールされたときに、ディスクへ退避した古い履歴を1ページ分展開する。
+	 * @return 新しく表示できる履歴が増えた場合 true
+	 */
+	public synchronized boolean loadMoreHistory() {
+		applyActiveLoadIfDone();
+		HistoryEntries source = getHistoryEntriesForDisplay();
+		if (visibleSpillPages * HistorySpillStore.PAGE_SIZE >= source.spilledSize()) {
+			return false;
+		}
+		// 前のページの先読みが終わるまでは、末尾に留まっていても次のページへ進めない
+		if (!source.isSpilledPagesCached(visibleSpillPages)) {
+			return false;
+		}
+		visibleSpillPages++;
+		return true;
+	}
+
+	/**
+	 * 退避ページの先読みが終わったときに呼ぶ処理を登録する。処理は I/O スレッドから呼ばれる。
+	 */
+	public void setSpillPageListener(Runnable listener) {
+		spillPageListener = listener == null ? () -> {} : listener;
+	}
+
+	private void onSpillPageLoaded() {
+		spillPageListener.run();
 	}
 
 	// 装飾を含む最新の ItemStack を履歴へ記録する
 	public synchronized void recordUsage(ItemStack stack) {
-		SavedStack.capture(stack).ifPresent(this::recordSnapshot);
+		if (stack == null || stack.isEmpty()) {
+			return;
+		}
+		// 個数違いを別エントリとして扱わないよう、履歴は常に1個のスタックとして記録する
+		SavedStack.capture(stack.copyWithCount(1)).ifPresent(this::recordSnapshot);
+	}
+
+	/**
+	 * 使用順に並んだスタックをまとめて履歴へ記録する。1 tick 分の使用を1回のロック取得で反映するために使う。
+	 */
+	public synchronized void recordUsages(List<ItemStack> stacks) {
+		for (ItemStack stack : stacks) {
+			recordUsage(stack);
+		}
 	}
 
 	// 旧API互換: ID 指定のみで履歴へ登録する
@@ -111,9 +282,31 @@ public final class HistoryManager {
 		SavedStack.fromId(id).ifPresent(this::recordSnapshot);
 	}
 
+	/**
+	 * 履歴タブに並べるスタック一覧を返す。
+	 * 返すリストと要素は共有キャッシュのため、呼び出し側で変更しないこと。
+	 */
 	public synchronized List<ItemStack> getDisplayStacksForTab() {
+		applyActiveLoadIfDone();
+		HistoryEntries source = getHistoryEntriesForDisplay();
+		if (source != displayCacheSource || source.version() != displayCacheVersion || visibleSpillPages != displayCachePages
+			|| source.loadedSpillPages() != displayCacheLoadedPages) {
+			displayCacheSource = source;
+			displayCacheVersion = source.version();
+			displayCachePages = visibleSpillPages;
+			// 先に番号を読んでおき、作り直しの途中で先読みが終わった場合も次回に反映させる
+			displayCacheLoadedPages = source.loadedSpillPages();
+			displayCache = buildDisplayStacks(source, visibleSpillPages);
+		}
+		return displayCache;
+	}
+
+	// 退避ページは復元済みの分だけ並べる。未復元のページは I/O スレッドで先読みし、終わり次第作り直させる
+	private List<ItemStack> buildDisplayStacks(HistoryEntries source, int spillPages) {
 		List<ItemStack> stacks = new ArrayList<>();
-		for (SavedStack saved : getHistoryEntriesForDisplay()) {
+		List<SavedStack> entries = source.newestFirst();
+		entries.addAll(source.cachedSpilledPages(spillPages, this::onSpillPageLoaded));
+		for (SavedStack saved : entries) {
 			if (saved == null) {
 				continue;
 			}
@@ -122,62 +315,167 @@ public final class HistoryManager {
 				continue;
 			}
 			stack.setCount(1);
-			if (containsStack(stacks, stack)) {
-				continue;
-			}
 			stacks.add(stack);
 		}
 		if (stacks.isEmpty()) {
 			stacks.add(new ItemStack(Items.BOOK));
 		}
-		return stacks;
+		return List.copyOf(stacks);
 	}
 
+	// キャッシュ済みの先頭要素をそのまま返す (変更しないこと)
 	public synchronized ItemStack getIconStack() {
-		List<ItemStack> displayStacks = getDisplayStacksForTab();
-		return displayStacks.get(0).copy();
+		return getDisplayStacksForTab().get(0);
 	}
 
 	public synchronized void populate(ItemGroup.Entries entries) {
 		for (ItemStack stack : getDisplayStacksForTab()) {
-			entries.add(stack.copy(), ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
+			entries.add(stack, ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
 		}
 	}
 
 	// スナップショット化した履歴をメモリとディスクへ反映する共通処理
 	private void recordSnapshot(SavedStack snapshot) {
-		updateDeque(recentItems, snapshot);
-		Path historyPath = activeHistoryPath;
-		String worldKeySnapshot = activeWorldKey;
-		saveHistoryAsync(historyPath, recentItems, worldKeySnapshot);
+		applyActiveLoadIfDone();
+		if (pendingActiveLoad != null) {
+			// 読み込み前の空の履歴をファイルへ書き出さないよう、完了後にまとめて反映する
+			recordedWhileLoading.add(snapshot);
+		} else {
+			recordActive(snapshot);
+		}
 		updateGlobalHistory(snapshot);
 	}
 
-	private Deque<SavedStack> getHistoryEntriesForDisplay() {
+	private void recordActive(SavedStack snapshot) {
+		recentItems.push(snapshot);
+		appendHistoryAsync(activeHistoryPath, recentItems, activeWorldKey, snapshot);
+	}
+
+	// 表示モードに応じて参照する履歴を切り替える。モードが変わると参照先が変わりキャッシュも作り直される
+	private HistoryEntries getHistoryEntriesForDisplay() {
 		BuildingSupportConfig.HistoryDisplayMode mode = BuildingSupportConfig.getInstance().getHistoryDisplayMode();
 		if (mode == BuildingSupportConfig.HistoryDisplayMode.ALL_WORLD) {
-			return loadHistory(getGlobalHistoryPath());
+			return getGlobalHistory();
 		}
-		return new ArrayDeque<>(recentItems);
+		return recentItems;
 	}
 
-	private static boolean containsStack(List<ItemStack> stacks, ItemStack candidate) {
-		for (ItemStack existing : stacks) {
-			if (ItemStack.areEqual(existing, candidate)) {
-				return true;
-			}
-		}
-		return false;
+	private static void applyLimits(HistoryEntries history) {
+		BuildingSupportConfig config = BuildingSupportConfig.getInstance();
+		int memoryEntries = config.getHistoryMemoryEntries();
+		history.setLimits(memoryEntries, config.getHistoryDepth() - memoryEntries);
 	}
 
 	private void updateGlobalHistory(SavedStack snapshot) {
-		Path globalPath = getGlobalHistoryPath();
-		Deque<SavedStack> global = loadHistory(globalPath);
-		updateDeque(global, snapshot);
-		saveHistoryAsync(globalPath, global, GLOBAL_HISTORY_WORLD_KEY);
+		HistoryEntries global = getGlobalHistory();
+		if (pendingGlobalLoad != null) {
+			// 読み込み前の空の履歴をファイルへ書き出さないよう、完了後にまとめて反映する
+			recordedWhileGlobalLoading.add(snapshot);
+			return;
+		}
+		recordGlobal(global, snapshot);
+	}
+
+	private void recordGlobal(HistoryEntries global, SavedStack snapshot) {
+		global.push(snapshot);
+		appendHistoryAsync(getGlobalHistoryPath(), global, GLOBAL_HISTORY_WORLD_KEY, snapshot);
+	}
+
+	/**
+	 * 全ワールド履歴は一度だけ I/O スレッドで読み込み、以降はメモリ上で直接更新する。
+	 * 読み込みが終わるまでは空のプレースホルダーを返す。
+	 */
+	private HistoryEntries getGlobalHistory() {
+		loadGlobalHistoryAsync();
+		if (pendingGlobalLoad != null && pendingGlobalLoad.isDone()) {
+			awaitGlobalLoad();
+		}
+		return globalHistory;
+	}
+
+	private void loadGlobalHistoryAsync() {
+		if (globalHistoryLoaded || pendingGlobalLoad != null) {
+			return;
+		}
+		Path path = getGlobalHistoryPath();
+		HistoryEntries loaded = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+		applyLimits(loaded);
+		Executor loader = scheduler.isShutdown() ? Runnable::run : scheduler;
+		pendingGlobalLoad = CompletableFuture.supplyAsync(() -> {
+			loaded.attachSpill(new HistorySpillStore(getSpillPath(path), scheduler));
+			readHistoryFromDisk(path, loaded);
+			return loaded;
+		}, loader);
+	}
+
+	// 読み込み中の全ワールド履歴があれば完了を待って反映し、その間の記録を積み直す
+	private void awaitGlobalLoad() {
+		CompletableFuture<HistoryEntries> load = pendingGlobalLoad;
+		if (load == null) {
+			return;
+		}
+		pendingGlobalLoad = null;
+		HistoryEntries loaded;
+		try {
+			loaded = load.join();
+		} catch (CompletionException | CancellationException exception) {
+			BuildingSupport.LOGGER.error("Failed to load history data: {}", getGlobalHistoryPath(), exception);
+			loaded = new HistoryEntries(BuildingSupportConfig.DEFAULT_HISTORY_MEMORY_ENTRIES);
+			applyLimits(loaded);
+			loaded.attachSpill(new HistorySpillStore(getSpillPath(getGlobalHistoryPath()), scheduler));
+		}
+		globalHistory = loaded;
+		globalHistoryLoaded = true;
+		List<SavedStack> recorded = List.copyOf(recordedWhileGlobalLoading);
+		recordedWhileGlobalLoading.clear();
+		for (SavedStack snapshot : recorded) {
+			recordGlobal(loaded, snapshot);
+		}
+	}
+
+	/**
+	 * 使用中のワールド履歴と全ワールド共通履歴を、人が読める JSON として exports フォルダへ書き出す。
+	 * 退避分も含めたすべての履歴を対象にする。
+	 */
+	public synchronized void exportJson() {
+		if (scheduler.isShutdown()) {
+			return;
+		}
+		awaitActiveLoad();
+		loadGlobalHistoryAsync();
+		awaitGlobalLoad();
+		Map<Path, SerializableData> exports = new LinkedHashMap<>();
+		exports.put(getExportPath(activeHistoryPath), createExportData(recentItems, activeWorldKey));
+		exports.put(getExportPath(getGlobalHistoryPath()), createExportData(getGlobalHistory(), GLOBAL_HISTORY_WORLD_KEY));
+		scheduler.execute(() -> {
+			try {
+				for (Map.Entry<Path, SerializableData> export : exports.entrySet()) {
+					Files.createDirectories(export.getKey().getParent());
+					try (Writer writer = Files.newBufferedWriter(export.getKey(), StandardCharsets.UTF_8)) {
+						gson.toJson(export.getValue(), writer);
+					}
+				}
+				ClientNotificationBridge.notify("message.utility-toolkit.history.export_done");
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to export history data: {}", exportDir, exception);
+				ClientNotificationBridge.notify("message.utility-toolkit.history.export_failed");
+			}
+		});
+	}
+
+	private static SerializableData createExportData(HistoryEntries history, String worldKey) {
+		List<SavedStack> entries = history.newestFirst();
+		int spilledPages = (history.spilledSize() + HistorySpillStore.PAGE_SIZE - 1) / HistorySpillStore.PAGE_SIZE;
+		entries.addAll(history.spilledPages(spilledPages));
+		return new SerializableData(entries.stream().map(SavedStack::toSerialized).toList(), worldKey);
+	}
+
+	private Path getExportPath(Path historyPath) {
+		return exportDir.resolve(baseName(historyPath.getFileName().toString()) + LEGACY_EXTENSION);
 	}
 
 	public synchronized boolean resetHistory(Path historyPath) {
+		awaitActiveLoad();
 		boolean deleted = deleteHistoryFile(historyPath);
 		if (deleted && historyPath.equals(activeHistoryPath)) {
 			reloadActive();
@@ -186,6 +484,7 @@ public final class HistoryManager {
 	}
 
 	public synchronized boolean resetActiveWorldHistory() {
+		awaitActiveLoad();
 		boolean deleted = deleteHistoryFile(activeHistoryPath);
 		if (deleted) {
 			reloadActive();
@@ -194,11 +493,12 @@ public final class HistoryManager {
 	}
 
 	public synchronized boolean resetGlobalHistory() {
+		awaitActiveLoad();
 		// 共有履歴ファイルとワールド別履歴ファイルを両方削除してリセットとみなす
 		boolean deletedGlobal = deleteHistoryFile(getGlobalHistoryPath());
 		boolean deletedWorlds = deleteWorldHistoryFiles();
 		if (deletedGlobal) {
-			invalidateGlobalCache();
+			clearGlobalHistory();
 		}
 		return deletedGlobal || deletedWorlds;
 	}
@@ -210,9 +510,9 @@ public final class HistoryManager {
 		}
 
 		boolean deletedAny = false;
-		try (DirectoryStream<Path> stream = Files.newDirectoryStream(historyDir, "*.json")) {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(historyDir, HISTORY_FILE_GLOB)) {
 			for (Path path : stream) {
-				if (ALL_WORLD_FILE_NAME.equals(path.getFileName().toString())) {
+				if (!isWorldHistoryFile(path)) {
 					continue;
 				}
 				if (deleteHistoryFile(path)) {
@@ -225,19 +525,31 @@ public final class HistoryManager {
 		return deletedAny;
 	}
 
-	private void invalidateGlobalCache() {
-		synchronized (globalCacheLock) {
-			globalHistoryCache = new ArrayDeque<>();
-			globalCacheTimestamp = FileTime.fromMillis(0L);
-			globalCacheInitialized = false;
-		}
+	private void clearGlobalHistory() {
+		// ファイルを削除した直後なので空の状態をそのまま正とする
+		globalHistory.clear();
+		globalHistory.attachSpill(new HistorySpillStore(getSpillPath(getGlobalHistoryPath()), scheduler));
+		globalHistoryLoaded = true;
 	}
 
 	private boolean deleteHistoryFile(Path path) {
+		if (path.equals(getGlobalHistoryPath())) {
+			// 読み込み中の全ワールド履歴が、削除後に書き直しを積まないよう先に済ませる
+			awaitGlobalLoad();
+		}
+		// 待機中のスナップショットが削除後にファイルを作り直さないよう取り消す
+		scheduler.cancel(path);
 		try {
-			boolean deleted = Files.deleteIfExists(path);
+			Path journalPath = getJournalPath(path);
+			boolean deletedJournal = Files.deleteIfExists(journalPath);
+			boolean deletedSpill = deleteSpillFile(path);
+			boolean deletedLegacy = Files.deleteIfExists(getLegacyPath(path));
+			journalCounts.remove(path);
+			boolean deleted = Files.deleteIfExists(path) || deletedJournal || deletedSpill || deletedLegacy;
+			ensureManifestLoaded();
+			manifest.remove(path.getFileName().toString());
 			if (deleted && path.equals(getGlobalHistoryPath())) {
-				invalidateGlobalCache();
+				clearGlobalHistory();
 			}
 			return deleted;
 		} catch (IOException exception) {
@@ -246,102 +558,316 @@ public final class HistoryManager {
 		}
 	}
 
-	public synchronized List<WorldHistoryInfo> listWorldHistories() {
-		List<WorldHistoryInfo> entries = new ArrayList<>();
-		if (!Files.exists(historyDir)) {
-			return entries;
+	// 使用中のストアがあれば書き込みを止めてから退避ファイルを消す
+	private boolean deleteSpillFile(Path historyPath) {
+		Path spillPath = getSpillPath(historyPath);
+		for (HistoryEntries history : List.of(recentItems, globalHistory)) {
+			HistorySpillStore store = history.spill();
+			if (store != null && store.path().equals(spillPath)) {
+				return store.close(true);
+			}
+		}
+		try {
+			return Files.deleteIfExists(spillPath);
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to delete history spill file: {}", spillPath, exception);
+			return false;
 		}
+	}
 
-		try (DirectoryStream<Path> stream = Files.newDirectoryStream(historyDir, "*.json")) {
-			for (Path path : stream) {
-				if (Files.isDirectory(path)) {
-					continue;
-				}
-				String fileName = path.getFileName().toString();
-				if (ALL_WORLD_FILE_NAME.equals(fileName)) {
-					continue;
-				}
-				String fallback = fileName.endsWith(".json") ? fileName.substring(0, fileName.length() - 5) : fileName;
-				String displayName = readSerializableData(path)
-					.map(data -> data.worldKey)
-					.filter(key -> key != null && !key.isBlank())
-					.orElse(fallback);
-				entries.add(new WorldHistoryInfo(path, displayName, fallback));
+	/**
+	 * ワールド別の履歴一覧を返す。各履歴ファイルは開かず、索引の内容だけから組み立てる。
+	 */
+	public synchronized List<WorldHistoryInfo> listWorldHistories() {
+		ensureManifestLoaded();
+		List<WorldHistoryInfo> entries = new ArrayList<>();
+		for (Map.Entry<String, HistoryManifest.Entry> entry : manifest.snapshot().entrySet()) {
+			String fileName = entry.getKey();
+			if (ALL_WORLD_FILE_NAME.equals(fileName)) {
+				continue;
 			}
-		} catch (IOException exception) {
-			BuildingSupport.LOGGER.error("Failed to scan history directory: {}", historyDir, exception);
+			HistoryManifest.Entry info = entry.getValue();
+			String fallback = baseName(fileName);
+			String displayName = info.worldKey == null || info.worldKey.isBlank() ? fallback : info.worldKey;
+			entries.add(new WorldHistoryInfo(historyDir.resolve(fileName), displayName, fallback,
+				info.entryCount, info.sizeBytes, info.lastUsed));
 		}
 
 		entries.sort(Comparator.comparing(WorldHistoryInfo::displayName, String.CASE_INSENSITIVE_ORDER));
 		return entries;
 	}
 
-	private Deque<SavedStack> loadHistory(Path path) {
-		if (path.equals(getGlobalHistoryPath())) {
-			return loadGlobalHistoryWithCache();
+	/**
+	 * 索引が未読み込みなら読み込む。描画スレッドと I/O スレッドの両方から呼ばれるため、
+	 * 判定から再構築までを索引のモニタで囲み、走査が二重に走らないようにする。
+	 */
+	private void ensureManifestLoaded() {
+		synchronized (manifest) {
+			loadManifestLocked();
 		}
-		return readHistoryFromDisk(path);
 	}
 
-	private Deque<SavedStack> loadGlobalHistoryWithCache() {
-		Path globalPath = getGlobalHistoryPath();
-		FileTime lastModified = getFileTimestamp(globalPath);
-		synchronized (globalCacheLock) {
-			if (!globalCacheInitialized || !Objects.equals(lastModified, globalCacheTimestamp)) {
-				Deque<SavedStack> loaded = readHistoryFromDisk(globalPath);
-				globalHistoryCache = new ArrayDeque<>(loaded);
-				globalCacheTimestamp = lastModified;
-				globalCacheInitialized = true;
-				return new ArrayDeque<>(loaded);
+	private void loadManifestLocked() {
+		if (manifest.isLoaded() || manifest.load()) {
+			return;
+		}
+		// 索引が無い (旧バージョンからの移行時など) 場合だけ、各履歴ファイルを読んで作り直す
+		Map<String, HistoryManifest.Entry> scanned = new LinkedHashMap<>();
+		if (Files.exists(historyDir)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(historyDir, HISTORY_FILE_GLOB)) {
+				for (Path path : stream) {
+					if (Files.isDirectory(path) || HistoryManifest.FILE_NAME.equals(path.getFileName().toString())) {
+						continue;
+					}
+					String storedKey = null;
+					int entryCount = 0;
+					if (path.getFileName().toString().endsWith(LEGACY_EXTENSION)) {
+						Optional<SerializableData> data = readSerializableData(path);
+						storedKey = data.map(value -> value.worldKey).orElse(null);
+						entryCount = data.map(HistoryManager::countEntries).orElse(0);
+					} else {
+						try {
+							SavedStackFile.Contents contents = SavedStackFile.readHeader(path);
+							storedKey = contents.header().getString(HEADER_WORLD_KEY, null);
+							entryCount = contents.expectedCount();
+						} catch (IOException exception) {
+							BuildingSupport.LOGGER.warn("Failed to read history header: {}", path, exception);
+						}
+					}
+					String worldKey = resolveWorldKeyForSave(storedKey, path);
+					long lastUsed = Files.getLastModifiedTime(path).toMillis();
+					scanned.put(path.getFileName().toString(), new HistoryManifest.Entry(worldKey, entryCount, lastUsed));
+				}
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to scan history directory: {}", historyDir, exception);
 			}
-			return new ArrayDeque<>(globalHistoryCache);
 		}
+		manifest.replaceAll(scanned);
 	}
 
-	private FileTime getFileTimestamp(Path path) {
-		try {
-			return Files.exists(path) ? Files.getLastModifiedTime(path) : FileTime.fromMillis(0L);
-		} catch (IOException exception) {
-			return FileTime.fromMillis(0L);
+	/**
+	 * 索引から保持上限を超えたワールド履歴を選び、削除する。索引の読み込みや走査を含めてすべて I/O スレッドで行う。
+	 * 使用中のワールド、直前まで使っていたワールド (保存待ちの書き出しが残っている) と全ワールド共通履歴は対象外。
+	 */
+	private void enforceRetention(Path previousPath) {
+		if (scheduler.isShutdown()) {
+			return;
 		}
+		BuildingSupportConfig.Snapshot config = BuildingSupportConfig.getInstance().snapshot();
+		HistoryRetention.Limits limits = new HistoryRetention.Limits(
+			config.historyRetentionMegabytes() * 1024L * 1024L,
+			config.historyRetentionFiles(),
+			config.historyRetentionDays()
+		);
+		// 同じワールドへ入り直した場合は同じ名前が重なるため、重複を許す copyOf で作る
+		Set<String> retained = Set.copyOf(List.of(
+			ALL_WORLD_FILE_NAME,
+			activeHistoryPath.getFileName().toString(),
+			previousPath.getFileName().toString()
+		));
+		scheduler.execute(() -> {
+			ensureManifestLoaded();
+			List<String> evicted = HistoryRetention.selectEvictions(manifest.snapshot(), retained, limits, System.currentTimeMillis());
+			if (evicted.isEmpty()) {
+				return;
+			}
+			for (String fileName : evicted) {
+				Path path = historyDir.resolve(fileName);
+				manifest.remove(fileName);
+				journalCounts.remove(path);
+				scheduler.cancel(path);
+				deleteEvictedHistory(path);
+			}
+			BuildingSupport.LOGGER.info("Pruned {} stale world histories", evicted.size());
+		});
+	}
+
+	// I/O スレッドから呼ばれる。使用中・直前のワールド以外が対象なので退避ストアは開かれていない
+	private void deleteEvictedHistory(Path path) {
+		for (Path candidate : List.of(path, getJournalPath(path), getSpillPath(path), getLegacyPath(path))) {
+			try {
+				Files.deleteIfExists(candidate);
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.warn("Failed to prune history file: {}", candidate, exception);
+			}
+		}
+	}
+
+	// 読み込み時の書き直しでは I/O スレッドから呼ばれる
+	private void touchManifest(Path path, HistoryEntries history, String worldKey) {
+		synchronized (manifest) {
+			loadManifestLocked();
+			manifest.touch(path.getFileName().toString(), worldKey, history.size() + history.spilledSize());
+			// 移行済みの旧 JSON の記録は残さない
+			manifest.remove(getLegacyPath(path).getFileName().toString());
+		}
+	}
+
+	private static int countEntries(SerializableData data) {
+		if (data.entries != null && !data.entries.isEmpty()) {
+			return data.entries.size();
+		}
+		return data.items == null ? 0 : data.items.size();
 	}
 
-	private Deque<SavedStack> readHistoryFromDisk(Path path) {
-		Deque<SavedStack> deque = new ArrayDeque<>();
-		Optional<SerializableData> data = readSerializableData(path);
-		if (data.isEmpty()) {
-			return deque;
+	// 履歴ファイル本体とジャーナル・退避ファイルの合計サイズ (I/O スレッドから呼ばれる)
+	private long measureHistoryFiles(String fileName) {
+		Path path = historyDir.resolve(fileName);
+		long total = 0L;
+		for (Path candidate : List.of(path, getJournalPath(path), getSpillPath(path))) {
+			try {
+				if (Files.exists(candidate)) {
+					total += Files.size(candidate);
+				}
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.warn("Failed to measure history file: {}", candidate, exception);
+			}
 		}
-		SerializableData serializableData = data.get();
-		String targetWorldKey = resolveWorldKeyForSave(serializableData.worldKey, path);
+		return total;
+	}
+
+	private boolean isWorldHistoryFile(Path path) {
+		String fileName = path.getFileName().toString();
+		return !ALL_WORLD_BASE_NAME.equals(baseName(fileName)) && !HistoryManifest.FILE_NAME.equals(fileName);
+	}
 
-		if (serializableData.entries != null && !serializableData.entries.isEmpty()) {
-			// entries が存在する場合は保存されている ItemStack をそのまま復元し、欠損があれば後で上書き保存する
-			boolean needsRewrite = appendSerializedEntries(serializableData.entries, deque);
-			if (needsRewrite) {
-				saveHistoryAsync(path, deque, targetWorldKey);
+	private void readHistoryFromDisk(Path path, HistoryEntries history) {
+		String storedWorldKey;
+		boolean needsRewrite;
+		if (Files.exists(path)) {
+			try {
+				SavedStackFile.Contents contents = SavedStackFile.read(path);
+				storedWorldKey = contents.header().getString(HEADER_WORLD_KEY, null);
+				// 新しい順に保存されているため、古いものから積んで並びを再現する
+				List<SavedStack> entries = contents.entries();
+				for (int i = entries.size() - 1; i >= 0; i--) {
+					history.push(entries.get(i));
+				}
+				needsRewrite = contents.damaged();
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to read history data: {}", path, exception);
+				return;
+			}
+		} else {
+			Optional<SerializableData> data = readSerializableData(getLegacyPath(path));
+			if (data.isEmpty()) {
+				return;
+			}
+			SerializableData serializableData = data.get();
+			storedWorldKey = serializableData.worldKey;
+			if (serializableData.entries != null && !serializableData.entries.isEmpty()) {
+				appendSerializedEntries(serializableData.entries, history);
+			} else if (serializableData.items != null && !serializableData.items.isEmpty()) {
+				appendLegacyItems(serializableData.items, history);
 			}
-			return deque;
+			// 旧形式から読み込んだ場合はバイナリ形式で書き直し、書き込み後に JSON を削除する
+			needsRewrite = true;
 		}
-		if (serializableData.items == null || serializableData.items.isEmpty()) {
-			return deque;
+		String targetWorldKey = resolveWorldKeyForSave(storedWorldKey, path);
+
+		// スナップショット以降に追記された使用記録を順に再生する
+		// 再生した分はすぐスナップショットへ畳み込み、次回起動時に同じ退避処理を繰り返さないようにする
+		int replayed = replayJournal(getJournalPath(path), history);
+		if (replayed != 0) {
+			needsRewrite = true;
 		}
-		// 旧フォーマット(items配列)から読み取った場合は現在の形式へ書き戻す
-		if (appendLegacyItems(serializableData.items, deque)) {
-			saveHistoryAsync(path, deque, targetWorldKey);
+		if (needsRewrite) {
+			saveHistoryAsync(path, history, targetWorldKey);
 		}
-		return deque;
 	}
 
 	/**
-	 * メインスレッドで収集した履歴内容を即座にスナップショットし、I/O専用スレッドで非同期保存する。
+	 * ジャーナルを先頭から読み、記録順に履歴へ反映する。
+	 * @return 反映した件数。破損した行があった場合は -1
 	 */
-	private void saveHistoryAsync(Path path, Deque<SavedStack> deque, String worldKey) {
-		if (executorShutdown.get()) {
+	private int replayJournal(Path journalPath, HistoryEntries history) {
+		if (!Files.exists(journalPath)) {
+			return 0;
+		}
+		int replayed = 0;
+		boolean corrupted = false;
+		try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				SavedStack.Serialized entry;
+				try {
+					entry = journalGson.fromJson(line, SavedStack.Serialized.class);
+				} catch (JsonSyntaxException exception) {
+					// 書き込み途中で終了した末尾行などは読み飛ばし、次の畳み込みで取り除く
+					corrupted = true;
+					continue;
+				}
+				Optional<SavedStack> saved = SavedStack.fromSerialized(entry);
+				if (saved.isEmpty()) {
+					corrupted = true;
+					continue;
+				}
+				history.push(normalizeCount(saved.get()));
+				replayed++;
+			}
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to read history journal: {}", journalPath, exception);
+			return -1;
+		}
+		return corrupted ? -1 : replayed;
+	}
+
+	/**
+	 * 1回の使用につき1レコードだけをジャーナルへ追記する。
+	 * 一定件数溜まった場合やスナップショットが未作成の場合は全体を書き出して畳み込む。
+	 */
+	private void appendHistoryAsync(Path path, HistoryEntries history, String worldKey, SavedStack entry) {
+		if (scheduler.isShutdown()) {
+			return;
+		}
+		if (scheduler.isPending(path)) {
+			// 書き出し待ちのスナップショットより後の記録は、ジャーナルではなくスナップショットの差し替えで反映する
+			saveHistoryAsync(path, history, worldKey);
+			return;
+		}
+		touchManifest(path, history, worldKey);
+		int pending = journalCounts.merge(path, 1, Integer::sum);
+		// 畳み込み直後の1件目だけスナップショットの有無を確認し、ジャーナル単独のファイルを作らない
+		if (pending >= JOURNAL_COMPACT_THRESHOLD || (pending == 1 && !Files.exists(path))) {
+			saveHistoryAsync(path, history, worldKey);
+			return;
+		}
+		scheduler.execute(() -> {
+			try {
+				appendJournalRecord(getJournalPath(path), entry);
+			} catch (Exception exception) {
+				BuildingSupport.LOGGER.error("履歴ジャーナルの追記中にエラーが発生しました: {}", path, exception);
+			}
+		});
+	}
+
+	private void appendJournalRecord(Path journalPath, SavedStack entry) {
+		SavedStack.Serialized record = HistorySpillStore.toCompactRecord(entry);
+		try (Writer writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			journalGson.toJson(record, writer);
+			writer.write('\n');
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to append history journal: {}", journalPath, exception);
+		}
+	}
+
+	/**
+	 * メインスレッドで収集した履歴内容を即座にスナップショットし、I/Oスレッドで非同期保存する。
+	 * 同じファイルへの保存は待機時間内の最後の1回にまとめる。
+	 * 保存が完了した時点でジャーナルの内容はスナップショットに含まれるため、ジャーナルは破棄する。
+	 */
+	private void saveHistoryAsync(Path path, HistoryEntries history, String worldKey) {
+		if (scheduler.isShutdown()) {
 			return;
 		}
-		Deque<SavedStack> snapshot = new ArrayDeque<>(deque);
-		ioExecutor.execute(() -> {
+		journalCounts.remove(path);
+		touchManifest(path, history, worldKey);
+		List<SavedStack> snapshot = history.newestFirst();
+		scheduler.schedule(path, () -> {
 			try {
 				writeHistorySnapshot(path, snapshot, worldKey);
 			} catch (Exception exception) {
@@ -350,33 +876,18 @@ public final class HistoryManager {
 		});
 	}
 
-	private void writeHistorySnapshot(Path path, Deque<SavedStack> snapshot, String worldKey) {
+	private void writeHistorySnapshot(Path path, List<SavedStack> snapshot, String worldKey) {
 		try {
-			Files.createDirectories(historyDir);
-			List<SavedStack.Serialized> serialized = snapshot.stream()
-				.map(SavedStack::toSerialized)
-				.toList();
-			SerializableData data = new SerializableData(serialized, worldKey);
-			try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-				gson.toJson(data, writer);
-			}
-			if (path.equals(getGlobalHistoryPath())) {
-				updateGlobalCacheFromSnapshot(snapshot, path);
-			}
+			NbtCompound header = new NbtCompound();
+			header.putString(HEADER_WORLD_KEY, worldKey);
+			SavedStackFile.write(path, header, snapshot);
+			Files.deleteIfExists(getJournalPath(path));
+			Files.deleteIfExists(getLegacyPath(path));
 		} catch (IOException exception) {
 			BuildingSupport.LOGGER.error("Failed to save history data: {}", path, exception);
 		}
 	}
 
-	private void updateGlobalCacheFromSnapshot(Deque<SavedStack> snapshot, Path path) {
-		FileTime timestamp = getFileTimestamp(path);
-		synchronized (globalCacheLock) {
-			globalHistoryCache = new ArrayDeque<>(snapshot);
-			globalCacheTimestamp = timestamp;
-			globalCacheInitialized = true;
-		}
-	}
-
 	private Optional<SerializableData> readSerializableData(Path path) {
 		if (!Files.exists(path)) {
 			return Optional.empty();
@@ -391,9 +902,10 @@ public final class HistoryManager {
 		return Optional.empty();
 	}
 
-	private boolean appendSerializedEntries(List<SavedStack.Serialized> entries, Deque<SavedStack> deque) {
+	private boolean appendSerializedEntries(List<SavedStack.Serialized> entries, HistoryEntries history) {
 		// 保存済みエントリを新しいデータ構造へ流し込みつつ、不足や破損を検知する
 		boolean needsRewrite = false;
+		List<Optional<SavedStack>> decoded = SavedStackDecoder.decodeSerialized(entries);
 		for (int i = entries.size() - 1; i >= 0; i--) {
 			SavedStack.Serialized entry = entries.get(i);
 			if (entry == null) {
@@ -405,8 +917,8 @@ public final class HistoryManager {
 			if (!hasSerializedStack) {
 				needsRewrite = true;
 			}
-			boolean added = SavedStack.fromSerialized(entry).map(saved -> {
-				updateDeque(deque, saved);
+			boolean added = decoded.get(i).map(saved -> {
+				history.push(normalizeCount(saved));
 				return true;
 			}).orElse(false);
 			if (!added) {
@@ -416,7 +928,7 @@ public final class HistoryManager {
 		return needsRewrite;
 	}
 
-	private boolean appendLegacyItems(List<String> items, Deque<SavedStack> deque) {
+	private boolean appendLegacyItems(List<String> items, HistoryEntries history) {
 		// 旧データのID一覧を ItemStack に変換して履歴へ加える
 		boolean migrated = false;
 		for (int i = items.size() - 1; i >= 0; i--) {
@@ -430,7 +942,7 @@ public final class HistoryManager {
 				continue;
 			}
 			if (SavedStack.fromId(id).map(saved -> {
-				updateDeque(deque, saved);
+				history.push(saved);
 				return true;
 			}).orElse(false)) {
 				migrated = true;
@@ -447,29 +959,52 @@ public final class HistoryManager {
 		if (path.equals(getGlobalHistoryPath())) {
 			return GLOBAL_HISTORY_WORLD_KEY;
 		}
-		String fileName = path.getFileName().toString();
-		if (fileName.endsWith(".json")) {
-			fileName = fileName.substring(0, fileName.length() - 5);
-		}
+		String fileName = baseName(path.getFileName().toString());
 		return fileName.isBlank() ? DEFAULT_WORLD_KEY : fileName;
 	}
 
-	private static void updateDeque(Deque<SavedStack> deque, SavedStack snapshot) {
-		deque.removeIf(existing -> existing.isSameStack(snapshot));
-		deque.addFirst(snapshot);
-		while (deque.size() > MAX_HISTORY) {
-			deque.removeLast();
+	// 旧バージョンで個数付きのまま保存された履歴を1個に揃え、識別キーを統一する
+	private static SavedStack normalizeCount(SavedStack saved) {
+		if (saved.count() == 1) {
+			return saved;
 		}
+		return SavedStack.capture(saved.toItemStack().copyWithCount(1)).orElse(saved);
 	}
 
 	private Path getWorldHistoryPath(String sanitizedKey) {
-		return historyDir.resolve(sanitizedKey + ".json");
+		return historyDir.resolve(sanitizedKey + SavedStackFile.EXTENSION);
 	}
 
 	private Path getGlobalHistoryPath() {
 		return historyDir.resolve(ALL_WORLD_FILE_NAME);
 	}
 
+	private static Path getJournalPath(Path historyPath) {
+		return resolveCompanionPath(historyPath, JOURNAL_EXTENSION);
+	}
+
+	private static Path getSpillPath(Path historyPath) {
+		return resolveCompanionPath(historyPath, SPILL_EXTENSION);
+	}
+
+	private static Path getLegacyPath(Path historyPath) {
+		return resolveCompanionPath(historyPath, LEGACY_EXTENSION);
+	}
+
+	private static Path resolveCompanionPath(Path historyPath, String extension) {
+		return historyPath.resolveSibling(baseName(historyPath.getFileName().toString()) + extension);
+	}
+
+	// 履歴ファイル名から拡張子 (新旧どちらでも) を取り除く
+	private static String baseName(String fileName) {
+		for (String extension : List.of(SavedStackFile.EXTENSION, LEGACY_EXTENSION)) {
+			if (fileName.endsWith(extension)) {
+				return fileName.substring(0, fileName.length() - extension.length());
+			}
+		}
+		return fileName;
+	}
+
 	private static String sanitize(String key) {
 		if (key == null || key.isBlank()) {
 			return DEFAULT_WORLD_KEY;
@@ -489,11 +1024,17 @@ public final class HistoryManager {
 		private final Path path;
 		private final String displayName;
 		private final String fileName;
+		private final int entryCount;
+		private final long sizeBytes;
+		private final long lastUsed;
 
-		private WorldHistoryInfo(Path path, String displayName, String fileName) {
+		private WorldHistoryInfo(Path path, String displayName, String fileName, int entryCount, long sizeBytes, long lastUsed) {
 			this.path = path;
 			this.displayName = displayName;
 			this.fileName = fileName;
+			this.entryCount = entryCount;
+			this.sizeBytes = sizeBytes;
+			this.lastUsed = lastUsed;
 		}
 
 		public Path path() {
@@ -507,6 +1048,21 @@ public final class HistoryManager {
 		public String fileName() {
 			return fileName;
 		}
+
+		public int entryCount() {
+			return entryCount;
+		}
+
+		public long sizeBytes() {
+			return sizeBytes;
+		}
+
+		/**
+		 * 最後に履歴を書き込んだ時刻 (エポックミリ秒)。
+		 */
+		public long lastUsed() {
+			return lastUsed;
+		}
 	}
 
 	private static final class SerializableData {
@@ -0,0 +1,194 @@
+package chihalu.building.support.history;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import chihalu.building.support.BuildingSupport;
+import chihalu.building.support.storage.PersistenceScheduler;
+
+/**
+ * 履歴ディレクトリ内のファイルごとに、ワールドキー・件数・サイズ・最終使用時刻を記録した索引。
+ * 一覧表示では各履歴ファイルを開かず、この1ファイルだけを読めば済むようにする。
+ */
+final class HistoryManifest {
+	static final String FILE_NAME = "manifest.json";
+	// 2: 履歴ファイルをバイナリ形式 (.dat) へ移行
+	private static final int FORMAT_VERSION = 2;
+
+	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private final Path manifestPath;
+	private final PersistenceScheduler scheduler;
+	// 履歴ファイル名 -> 記録。内容はこのインスタンスのモニタで保護する
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	// サイズを測り直す必要があるファイル名
+	private final Set<String> dirtySizes = new HashSet<>();
+	// 履歴ファイル名から関連ファイルを含む合計サイズを求める関数 (I/O スレッドで呼ばれる)
+	private final ToLongFunction<String> sizeMeasurer;
+	private boolean loaded;
+
+	HistoryManifest(Path historyDir, PersistenceScheduler scheduler, ToLongFunction<String> sizeMeasurer) {
+		this.manifestPath = historyDir.resolve(FILE_NAME);
+		this.scheduler = scheduler;
+		this.sizeMeasurer = sizeMeasurer;
+	}
+
+	/**
+	 * 索引ファイルを読み込む。存在しないか壊れている場合は false を返し、呼び出し側で再構築させる。
+	 */
+	synchronized boolean load() {
+		loaded = true;
+		entries.clear();
+		if (!Files.exists(manifestPath)) {
+			return false;
+		}
+		try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+			SerializableData data = gson.fromJson(reader, SerializableData.class);
+			if (data == null || data.version != FORMAT_VERSION || data.files == null) {
+				return false;
+			}
+			for (Map.Entry<String, Entry> entry : data.files.entrySet()) {
+				if (entry.getKey() != null && entry.getValue() != null) {
+					entries.put(entry.getKey(), entry.getValue());
+				}
+			}
+			return true;
+		} catch (IOException | JsonParseException exception) {
+			BuildingSupport.LOGGER.warn("Failed to read history manifest, rebuilding it: {}", manifestPath, exception);
+			entries.clear();
+			return false;
+		}
+	}
+
+	synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * ディレクトリ走査で集めた内容で索引を置き換え、書き出す。
+	 */
+	synchronized void replaceAll(Map<String, Entry> scanned) {
+		entries.clear();
+		entries.putAll(scanned);
+		dirtySizes.addAll(scanned.keySet());
+		scheduleFlush();
+	}
+
+	/**
+	 * 履歴を書き込んだときに件数と最終使用時刻を更新する。サイズは書き出し時に I/O スレッドで測る。
+	 */
+	synchronized void touch(String fileName, String worldKey, int entryCount) {
+		Entry entry = entries.computeIfAbsent(fileName, key -> new Entry());
+		entry.worldKey = worldKey;
+		entry.entryCount = entryCount;
+		entry.lastUsed = System.currentTimeMillis();
+		dirtySizes.add(fileName);
+		scheduleFlush();
+	}
+
+	synchronized void remove(String fileName) {
+		if (entries.remove(fileName) != null) {
+			dirtySizes.remove(fileName);
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * 記録済みのファイル名と内容のコピーを返す。
+	 */
+	synchronized Map<String, Entry> snapshot() {
+		Map<String, Entry> copy = new LinkedHashMap<>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().copy());
+		}
+		return copy;
+	}
+
+	// 連続した更新は1回の書き出しにまとめる
+	private void scheduleFlush() {
+		scheduler.schedule(manifestPath, this::flush);
+	}
+
+	private void flush() {
+		List<String> toMeasure;
+		synchronized (this) {
+			toMeasure = new ArrayList<>(dirtySizes);
+			dirtySizes.clear();
+		}
+		Map<String, Long> sizes = new LinkedHashMap<>();
+		for (String fileName : toMeasure) {
+			sizes.put(fileName, sizeMeasurer.applyAsLong(fileName));
+		}
+		SerializableData data = new SerializableData();
+		synchronized (this) {
+			for (Map.Entry<String, Long> size : sizes.entrySet()) {
+				Entry entry = entries.get(size.getKey());
+				if (entry != null) {
+					entry.sizeBytes = size.getValue();
+				}
+			}
+			data.files = snapshot();
+		}
+		write(data);
+	}
+
+	private void write(SerializableData data) {
+		Path tempPath = manifestPath.resolveSibling(FILE_NAME + ".tmp");
+		try {
+			Files.createDirectories(manifestPath.getParent());
+			try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+				gson.toJson(data, writer);
+			}
+			try {
+				Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException exception) {
+				Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to save history manifest: {}", manifestPath, exception);
+		}
+	}
+
+	static final class Entry {
+		String worldKey;
+		int entryCount;
+		long sizeBytes;
+		long lastUsed;
+
+		Entry() {
+		}
+
+		Entry(String worldKey, int entryCount, long lastUsed) {
+			this.worldKey = worldKey;
+			this.entryCount = entryCount;
+			this.lastUsed = lastUsed;
+		}
+
+		private Entry copy() {
+			Entry copy = new Entry(worldKey, entryCount, lastUsed);
+			copy.sizeBytes = sizeBytes;
+			return copy;
+		}
+	}
+
+	private static final class SerializableData {
+		private int version = FORMAT_VERSION;
+		private Map<String, Entry> files;
+	}
+}
@@ -0,0 +1,54 @@
+package chihalu.building.support.history;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 履歴ディレクトリの保持上限 (合計サイズ・ファイル数・経過日数) から、削除すべきワールド履歴を選ぶ。
+ * 判定は索引の内容だけで行い、履歴ファイル自体は開かない。
+ */
+final class HistoryRetention {
+	private HistoryRetention() {
+	}
+
+	/**
+	 * @param entries  索引の内容 (ファイル名 -> 記録)
+	 * @param retained 上限に関係なく残すファイル名 (使用中のワールドや全ワールド共通履歴)
+	 * @return 最終使用が古い順に並べた削除対象のファイル名
+	 */
+	static List<String> selectEvictions(Map<String, HistoryManifest.Entry> entries, Set<String> retained, Limits limits, long now) {
+		long totalBytes = 0L;
+		int fileCount = 0;
+		List<Map.Entry<String, HistoryManifest.Entry>> candidates = new ArrayList<>();
+		for (Map.Entry<String, HistoryManifest.Entry> entry : entries.entrySet()) {
+			totalBytes += entry.getValue().sizeBytes;
+			fileCount++;
+			if (!retained.contains(entry.getKey())) {
+				candidates.add(entry);
+			}
+		}
+		// 最後に使われたのが古いものから順に削除する (LRU)
+		candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+
+		long oldestAllowed = now - TimeUnit.DAYS.toMillis(limits.maxAgeDays());
+		List<String> evicted = new ArrayList<>();
+		for (Map.Entry<String, HistoryManifest.Entry> entry : candidates) {
+			boolean expired = entry.getValue().lastUsed < oldestAllowed;
+			boolean overBudget = fileCount > limits.maxFiles() || totalBytes > limits.maxBytes();
+			if (!expired && !overBudget) {
+				break;
+			}
+			evicted.add(entry.getKey());
+			totalBytes -= entry.getValue().sizeBytes;
+			fileCount--;
+		}
+		return evicted;
+	}
+
+	record Limits(long maxBytes, int maxFiles, int maxAgeDays) {
+	}
+}
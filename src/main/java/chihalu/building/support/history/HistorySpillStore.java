@@ -0,0 +1,541 @@
+package chihalu.building.support.history;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import chihalu.building.support.BuildingSupport;
+import chihalu.building.support.storage.SavedStack;
+import chihalu.building.support.storage.SavedStackFile;
+
+/**
+ * メモリに載せきれない古い履歴をディスクへ退避しておくページ単位のストア。
+ * メモリにはキーとファイル上の位置だけを保持し、スタック本体はタブをスクロールしたときに必要なページだけ復元する。
+ *
+ * <p>ファイルは追記専用のレコード列で、PUT (キー + NBT バイナリのスタック) と REMOVE (キー) の2種類を持つ。
+ * 読み込み時はレコードを先頭から再生して索引を組み立て、不要レコードが増えたら生きているものだけで書き直す。</p>
+ */
+final class HistorySpillStore {
+	static final int PAGE_SIZE = 45;
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 2;
+	private static final int COMPACT_SLACK = 64;
+	private static final int PAGE_CACHE_SIZE = 4;
+	private static final Gson GSON = new GsonBuilder().create();
+
+	private final Path path;
+	private final Executor ioExecutor;
+	// 挿入順 = 古い順。末尾ほど新しい退避エントリになる
+	private final LinkedHashMap<String, Slot> index = new LinkedHashMap<>();
+	// I/O スレッドで復元したページも書き込むため、pageCache 自身のモニタで保護する
+	private final LinkedHashMap<Integer, List<SavedStack>> pageCache = new LinkedHashMap<>(8, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<SavedStack>> eldest) {
+			return size() > PAGE_CACHE_SIZE;
+		}
+	};
+	// I/O スレッドで復元中のページ番号 (pageCache のモニタで保護する)
+	private final Set<Integer> loadingPages = new HashSet<>();
+	// ファイルの読み書きは I/O スレッドと呼び出し元スレッドの双方から行うため、このロックで直列化する
+	private final Object fileLock = new Object();
+	private int recordCount;
+	private volatile int version;
+	// 先読みしたページがキャッシュへ入るたびに進める。表示用キャッシュの作り直し判定に使う
+	private volatile int loadedPageCount;
+	// 履歴の削除後に残った書き込みタスクがファイルを作り直さないようにするためのフラグ
+	private volatile boolean closed;
+
+	HistorySpillStore(Path path, Executor ioExecutor) {
+		this.path = path;
+		this.ioExecutor = ioExecutor;
+	}
+
+	Path path() {
+		return path;
+	}
+
+	int size() {
+		return index.size();
+	}
+
+	int version() {
+		return version;
+	}
+
+	int loadedPageCount() {
+		return loadedPageCount;
+	}
+
+	/**
+	 * ファイルのレコードを再生してキーと位置の索引を組み立てる。スタックの復元は行わない。
+	 */
+	void load() {
+		index.clear();
+		recordCount = 0;
+		invalidate();
+		if (!Files.exists(path)) {
+			return;
+		}
+		boolean truncated = false;
+		synchronized (fileLock) {
+			try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+				long position = 0L;
+				while (true) {
+					byte type;
+					try {
+						type = input.readByte();
+					} catch (EOFException endOfFile) {
+						break;
+					}
+					int keyLength = input.readInt();
+					byte[] keyBytes = new byte[keyLength];
+					input.readFully(keyBytes);
+					String key = new String(keyBytes, StandardCharsets.UTF_8);
+					position += 1 + Integer.BYTES + keyLength;
+					recordCount++;
+					if (type == RECORD_REMOVE) {
+						index.remove(key);
+						continue;
+					}
+					int payloadLength = input.readInt();
+					position += Integer.BYTES;
+					input.skipNBytes(payloadLength);
+					Slot slot = new Slot(key);
+					slot.offset = position;
+					slot.length = payloadLength;
+					// 同じキーが再登録された場合は最新の位置へ付け替える
+					index.remove(key);
+					index.put(key, slot);
+					position += payloadLength;
+				}
+			} catch (EOFException exception) {
+				// 書き込み途中で終了した末尾レコードは捨てて、直後の書き直しで取り除く
+				truncated = true;
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to read history spill file: {}", path, exception);
+				truncated = true;
+			}
+			if (rekeyLegacyEntries()) {
+				truncated = true;
+			}
+		}
+		if (truncated) {
+			scheduleCompaction();
+		}
+	}
+
+	/**
+	 * 旧バージョンは SNBT 全体をキーにしていたため、スタックを復元して指紋のキーへ付け替える。
+	 * 付け替えた場合は true を返し、呼び出し側で新しいキーのまま書き直させる。
+	 */
+	private boolean rekeyLegacyEntries() {
+		boolean legacy = false;
+		for (String key : index.keySet()) {
+			if (!SavedStack.isUniqueKey(key)) {
+				legacy = true;
+				break;
+			}
+		}
+		if (!legacy) {
+			return false;
+		}
+		List<Slot> slots = new ArrayList<>(index.values());
+		index.clear();
+		try (FileChannel channel = openForRead()) {
+			for (Slot slot : slots) {
+				Optional<SavedStack> decoded = channel == null ? Optional.empty() : decode(readPayload(channel, slot));
+				if (decoded.isEmpty()) {
+					continue;
+				}
+				Slot rekeyed = new Slot(decoded.get().uniqueKey());
+				rekeyed.offset = slot.offset;
+				rekeyed.length = slot.length;
+				index.remove(rekeyed.key);
+				index.put(rekeyed.key, rekeyed);
+			}
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to migrate history spill keys: {}", path, exception);
+		}
+		BuildingSupport.LOGGER.info("Migrated {} history spill entries to fingerprint keys: {}", index.size(), path);
+		return true;
+	}
+
+	/**
+	 * メモリ上の履歴から押し出されたエントリを、退避分の中で最も新しいものとして登録する。
+	 */
+	void pushNewest(SavedStack entry) {
+		String key = entry.uniqueKey();
+		index.remove(key);
+		Slot slot = new Slot(key);
+		slot.pending = entry;
+		index.put(key, slot);
+		recordCount++;
+		invalidate();
+		ioExecutor.execute(() -> appendPut(slot));
+		compactIfNeeded();
+	}
+
+	/**
+	 * 退避分から取り除く。メモリ上の履歴へ戻すときに呼ばれる。
+	 */
+	boolean remove(String key) {
+		if (index.remove(key) == null) {
+			return false;
+		}
+		recordCount++;
+		invalidate();
+		ioExecutor.execute(() -> appendRemoves(List.of(key)));
+		compactIfNeeded();
+		return true;
+	}
+
+	/**
+	 * 古いものから順に捨てて件数を上限へ収める。
+	 * 上限は設定で変わりうるため、捨てた分も REMOVE レコードとして残し、次回の読み込みで復活させない。
+	 */
+	void trimTo(int capacity) {
+		if (index.size() <= capacity) {
+			return;
+		}
+		List<String> removed = new ArrayList<>(index.size() - capacity);
+		Iterator<String> iterator = index.keySet().iterator();
+		while (index.size() > capacity && iterator.hasNext()) {
+			removed.add(iterator.next());
+			iterator.remove();
+		}
+		recordCount += removed.size();
+		invalidate();
+		ioExecutor.execute(() -> appendRemoves(removed));
+		compactIfNeeded();
+	}
+
+	/**
+	 * 新しい順で page 番目のページを復元して返す。直近に参照したページはキャッシュする。
+	 * 呼び出し元のスレッドでファイルを読むため、描画スレッドからは {@link #cachedPage(int)} を使う。
+	 */
+	List<SavedStack> readPage(int page) {
+		List<SavedStack> cached = cachedPage(page);
+		if (cached != null) {
+			return cached;
+		}
+		List<SavedStack> result = decodeSlots(selectSlots(page), page);
+		synchronized (pageCache) {
+			pageCache.put(page, result);
+		}
+		return result;
+	}
+
+	/**
+	 * 復元済みのページがあれば返す。無ければ null。
+	 */
+	List<SavedStack> cachedPage(int page) {
+		if (page * PAGE_SIZE >= index.size()) {
+			return List.of();
+		}
+		synchronized (pageCache) {
+			return pageCache.get(page);
+		}
+	}
+
+	/**
+	 * page 番目のページを I/O スレッドで復元してキャッシュへ入れる。
+	 * 復元中に内容が変わった場合は結果を捨てる。キャッシュへ入れたときだけ onLoaded を I/O スレッドで呼ぶ。
+	 */
+	void prefetch(int page, Runnable onLoaded) {
+		List<Slot> slots = selectSlots(page);
+		if (slots.isEmpty()) {
+			return;
+		}
+		int requestedVersion = version;
+		synchronized (pageCache) {
+			if (pageCache.containsKey(page) || !loadingPages.add(page)) {
+				return;
+			}
+		}
+		ioExecutor.execute(() -> {
+			List<SavedStack> result = decodeSlots(slots, page);
+			synchronized (pageCache) {
+				if (version != requestedVersion) {
+					return;
+				}
+				loadingPages.remove(page);
+				pageCache.put(page, result);
+				loadedPageCount++;
+			}
+			onLoaded.run();
+		});
+	}
+
+	// 索引の並びは呼び出し元のスレッドでだけ辿り、ファイルの読み取りに必要な位置だけを取り出す
+	private List<Slot> selectSlots(int page) {
+		int from = page * PAGE_SIZE;
+		if (from >= index.size()) {
+			return List.of();
+		}
+		List<Slot> slots = new ArrayList<>(PAGE_SIZE);
+		int position = 0;
+		for (Slot slot : index.sequencedValues().reversed()) {
+			if (position++ < from) {
+				continue;
+			}
+			slots.add(slot);
+			if (slots.size() >= PAGE_SIZE) {
+				break;
+			}
+		}
+		return slots;
+	}
+
+	private List<SavedStack> decodeSlots(List<Slot> slots, int page) {
+		List<SavedStack> decoded = new ArrayList<>(slots.size());
+		synchronized (fileLock) {
+			try (FileChannel channel = openForRead()) {
+				for (Slot slot : slots) {
+					SavedStack pending = slot.pending;
+					if (pending != null) {
+						decoded.add(pending);
+						continue;
+					}
+					if (channel == null) {
+						continue;
+					}
+					decode(readPayload(channel, slot)).ifPresent(decoded::add);
+				}
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to read history spill page {}: {}", page, path, exception);
+			}
+		}
+		return List.copyOf(decoded);
+	}
+
+	/**
+	 * 以降の書き込みを止め、退避ファイルを削除する。削除後は新しいストアを作り直して使う。
+	 */
+	boolean close(boolean deleteFile) {
+		closed = true;
+		index.clear();
+		recordCount = 0;
+		invalidate();
+		if (!deleteFile) {
+			return false;
+		}
+		synchronized (fileLock) {
+			try {
+				return Files.deleteIfExists(path);
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to delete history spill file: {}", path, exception);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 保存用の簡潔なレコードを作る。SNBT があれば復元できるため JSON 形式は重複して持たない。
+	 */
+	static SavedStack.Serialized toCompactRecord(SavedStack entry) {
+		SavedStack.Serialized record = entry.toSerialized();
+		if (record.nbt != null && !record.nbt.isBlank()) {
+			record.stack = null;
+		}
+		return record;
+	}
+
+	private void invalidate() {
+		synchronized (pageCache) {
+			version++;
+			pageCache.clear();
+			loadingPages.clear();
+		}
+	}
+
+	private void compactIfNeeded() {
+		if (recordCount > index.size() * 2 + COMPACT_SLACK) {
+			scheduleCompaction();
+		}
+	}
+
+	private void scheduleCompaction() {
+		List<Slot> live = new ArrayList<>(index.values());
+		recordCount = live.size();
+		ioExecutor.execute(() -> rewrite(live));
+	}
+
+	private void appendPut(Slot slot) {
+		SavedStack entry = slot.pending;
+		if (entry == null) {
+			return;
+		}
+		byte[] payload = encodePayload(entry);
+		synchronized (fileLock) {
+			if (closed) {
+				return;
+			}
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				long start = channel.size();
+				byte[] key = slot.key.getBytes(StandardCharsets.UTF_8);
+				writeFully(channel, encodeRecord(RECORD_PUT, key, payload));
+				slot.offset = start + 1 + Integer.BYTES + key.length + Integer.BYTES;
+				slot.length = payload.length;
+				slot.pending = null;
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to append history spill record: {}", path, exception);
+			}
+		}
+	}
+
+	private void appendRemoves(List<String> keys) {
+		synchronized (fileLock) {
+			if (closed) {
+				return;
+			}
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				for (String key : keys) {
+					writeFully(channel, encodeRecord(RECORD_REMOVE, key.getBytes(StandardCharsets.UTF_8), null));
+				}
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to append history spill record: {}", path, exception);
+			}
+		}
+	}
+
+	// 生きているエントリだけを古い順に書き直し、各スロットの位置を付け替える
+	private void rewrite(List<Slot> live) {
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		synchronized (fileLock) {
+			if (closed) {
+				return;
+			}
+			long[] offsets = new long[live.size()];
+			int[] lengths = new int[live.size()];
+			try (FileChannel source = openForRead();
+				FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long position = 0L;
+				for (int i = 0; i < live.size(); i++) {
+					Slot slot = live.get(i);
+					byte[] payload;
+					SavedStack pending = slot.pending;
+					if (pending != null) {
+						payload = encodePayload(pending);
+					} else if (source != null && slot.offset >= 0) {
+						payload = readPayload(source, slot);
+					} else {
+						offsets[i] = -1L;
+						continue;
+					}
+					byte[] key = slot.key.getBytes(StandardCharsets.UTF_8);
+					writeFully(target, encodeRecord(RECORD_PUT, key, payload));
+					offsets[i] = position + 1 + Integer.BYTES + key.length + Integer.BYTES;
+					lengths[i] = payload.length;
+					position += 1 + Integer.BYTES + key.length + Integer.BYTES + payload.length;
+				}
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to compact history spill file: {}", path, exception);
+				return;
+			}
+			try {
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException exception) {
+				BuildingSupport.LOGGER.error("Failed to replace history spill file: {}", path, exception);
+				return;
+			}
+			for (int i = 0; i < live.size(); i++) {
+				if (offsets[i] < 0) {
+					continue;
+				}
+				Slot slot = live.get(i);
+				slot.offset = offsets[i];
+				slot.length = lengths[i];
+				slot.pending = null;
+			}
+		}
+	}
+
+	private FileChannel openForRead() throws IOException {
+		return Files.exists(path) ? FileChannel.open(path, StandardOpenOption.READ) : null;
+	}
+
+	private static byte[] readPayload(FileChannel channel, Slot slot) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+		long position = slot.offset;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("History spill record is truncated");
+			}
+			position += read;
+		}
+		return buffer.array();
+	}
+
+	// 通常は NBT のバイナリで保存し、変換できない場合だけ JSON 形式のレコードにする
+	private static byte[] encodePayload(SavedStack entry) {
+		return SavedStackFile.encodeEntry(entry)
+			.orElseGet(() -> GSON.toJson(toCompactRecord(entry)).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Optional<SavedStack> decode(byte[] payload) {
+		if (SavedStackFile.isBinaryEntry(payload)) {
+			return SavedStackFile.decodeEntry(payload);
+		}
+		try {
+			SavedStack.Serialized entry = GSON.fromJson(new String(payload, StandardCharsets.UTF_8), SavedStack.Serialized.class);
+			return SavedStack.fromSerialized(entry);
+		} catch (JsonSyntaxException exception) {
+			BuildingSupport.LOGGER.warn("Ignored malformed history spill record", exception);
+			return Optional.empty();
+		}
+	}
+
+	private static ByteBuffer encodeRecord(byte type, byte[] key, byte[] payload) {
+		int size = 1 + Integer.BYTES + key.length + (payload == null ? 0 : Integer.BYTES + payload.length);
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put(type);
+		buffer.putInt(key.length);
+		buffer.put(key);
+		if (payload != null) {
+			buffer.putInt(payload.length);
+			buffer.put(payload);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static final class Slot {
+		private final String key;
+		private volatile long offset = -1L;
+		private volatile int length;
+		// I/O スレッドが書き終えるまではメモリ上のスナップショットから読む
+		private volatile SavedStack pending;
+
+		private Slot(String key) {
+			this.key = key;
+		}
+	}
+}
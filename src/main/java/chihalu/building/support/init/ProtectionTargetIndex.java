@@ -0,0 +1,66 @@
+package chihalu.building.support.init;
+
+import java.util.BitSet;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagKey;
+
+import chihalu.building.support.BuildingSupport;
+
+/**
+ * 保護タグに含まれるブロック状態を、状態の数値 ID を添字にしたビット列として持つ。
+ * 延焼や融解の判定はティックごとに大量に呼ばれるため、タグの集合を辿らずにビット1つの参照で済ませる。
+ * タグが読み込み直されるたびに作り直す。読み込み前はタグを直接参照する。
+ */
+public final class ProtectionTargetIndex {
+	private static volatile BitSet fireTargets;
+	private static volatile BitSet iceTargets;
+
+	private ProtectionTargetIndex() {
+	}
+
+	public static void register() {
+		// 判定はサーバー側だけで使う。クライアントがタグを受け取ったときは作り直さない
+		CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> {
+			if (!client) {
+				rebuild();
+			}
+		});
+	}
+
+	public static boolean isFireProtected(BlockState state) {
+		return contains(fireTargets, state, UtilityToolkitTags.FIRE_PROTECTION_TARGETS);
+	}
+
+	public static boolean isIceProtected(BlockState state) {
+		return contains(iceTargets, state, UtilityToolkitTags.ICE_PROTECTION_TARGETS);
+	}
+
+	private static boolean contains(BitSet targets, BlockState state, TagKey<Block> tag) {
+		if (targets == null) {
+			return state.isIn(tag);
+		}
+		return targets.get(Block.getRawIdFromState(state));
+	}
+
+	private static void rebuild() {
+		fireTargets = index(UtilityToolkitTags.FIRE_PROTECTION_TARGETS);
+		iceTargets = index(UtilityToolkitTags.ICE_PROTECTION_TARGETS);
+		BuildingSupport.LOGGER.debug("Rebuilt protection target index: fire={}, ice={}", fireTargets.cardinality(), iceTargets.cardinality());
+	}
+
+	// 同じブロックの状態はすべて同じタグに属するため、ブロックごとに全状態の ID を立てる
+	private static BitSet index(TagKey<Block> tag) {
+		BitSet targets = new BitSet(Block.STATE_IDS.size());
+		for (RegistryEntry<Block> entry : Registries.BLOCK.iterateEntries(tag)) {
+			for (BlockState state : entry.value().getStateManager().getStates()) {
+				targets.set(Block.getRawIdFromState(state));
+			}
+		}
+		return targets;
+	}
+}
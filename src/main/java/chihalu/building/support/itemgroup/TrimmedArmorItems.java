@@ -1,6 +1,8 @@
 package chihalu.building.support.itemgroup;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import net.minecraft.component.DataComponentTypes;
 import net.minecraft.item.Item;
@@ -10,75 +12,151 @@ import net.minecraft.item.Items;
 import net.minecraft.item.equipment.trim.ArmorTrim;
 import net.minecraft.item.equipment.trim.ArmorTrimMaterial;
 import net.minecraft.item.equipment.trim.ArmorTrimPattern;
-import net.minecraft.registry.BuiltinRegistries;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.registry.RegistryWrapper;
 import net.minecraft.registry.entry.RegistryEntry;
 
+import chihalu.building.support.BuildingSupport;
+import chihalu.building.support.config.BuildingSupportConfig;
+import chihalu.building.support.storage.RegistryLookupProvider;
+
 /**
  * 建築支援タブで使うトリム付き防具を一括生成するユーティリティです。
  * すべての模様パターンと素材の組み合わせを事前に展開し、タブに素早く登録できるようにします。
+ * 展開した一覧はレジストリ参照ごとに1回だけ作り、参照が変わるかデータパックが再読み込みされるまで使い回します。
+ * <p>
+ * ページ表示を有効にした場合は模様1種類を1ページとし、表示中のページだけを生成してタブへ載せます。
+ * 検索タブには模様ごと・素材ごとの代表だけを載せ、検索の索引を小さく保ちます。
  */
 public final class TrimmedArmorItems {
+	// 最後に展開したレジストリ参照と、その参照で作った防具ごとの一覧
+	private static volatile TrimTables tables;
+	// 防具ごとの表示中のページ (クライアントスレッドからのみ触る)
+	private static final Map<ArmorSet, Integer> currentPages = new EnumMap<>(ArmorSet.class);
+
 	private TrimmedArmorItems() {
 	}
 
 	public static void populateLeather(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.LEATHER_HELMET, Items.LEATHER_CHESTPLATE, Items.LEATHER_LEGGINGS, Items.LEATHER_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.LEATHER);
 	}
 
 	public static void populateChainmail(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.CHAINMAIL_HELMET, Items.CHAINMAIL_CHESTPLATE, Items.CHAINMAIL_LEGGINGS, Items.CHAINMAIL_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.CHAINMAIL);
 	}
 
 	public static void populateIron(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.IRON_HELMET, Items.IRON_CHESTPLATE, Items.IRON_LEGGINGS, Items.IRON_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.IRON);
 	}
 
 	public static void populateGold(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.GOLDEN_HELMET, Items.GOLDEN_CHESTPLATE, Items.GOLDEN_LEGGINGS, Items.GOLDEN_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.GOLD);
 	}
 
 	public static void populateDiamond(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.DIAMOND_HELMET, Items.DIAMOND_CHESTPLATE, Items.DIAMOND_LEGGINGS, Items.DIAMOND_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.DIAMOND);
 	}
 
 	public static void populateNetherite(ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
-		populate(context.lookup(), entries, Items.NETHERITE_HELMET, Items.NETHERITE_CHESTPLATE, Items.NETHERITE_LEGGINGS, Items.NETHERITE_BOOTS);
+		populate(context.lookup(), entries, ArmorSet.NETHERITE);
 	}
 
 	public static ItemStack createIcon(Item iconArmor) {
-		RegistryWrapper.WrapperLookup lookup = BuiltinRegistries.createWrapperLookup();
-		List<RegistryEntry.Reference<ArmorTrimPattern>> patterns = getPatterns(lookup);
-		List<RegistryEntry.Reference<ArmorTrimMaterial>> materials = getMaterials(lookup);
+		// レジストリの構築は重いため、共有の参照を使う (未接続時は組み込みレジストリを1回だけ構築する)
+		TrimTables current = tablesFor(RegistryLookupProvider.get());
 		ItemStack stack = new ItemStack(iconArmor);
-		if (!patterns.isEmpty() && !materials.isEmpty()) {
-			stack.set(DataComponentTypes.TRIM, new ArmorTrim(materials.getFirst(), patterns.getFirst()));
+		if (current.firstTrim() != null) {
+			stack.set(DataComponentTypes.TRIM, current.firstTrim());
 		}
 		return stack;
 	}
 
-	private static void populate(RegistryWrapper.WrapperLookup lookup, ItemGroup.Entries entries, Item... armorPieces) {
-		List<RegistryEntry.Reference<ArmorTrimPattern>> patterns = getPatterns(lookup);
-		List<RegistryEntry.Reference<ArmorTrimMaterial>> materials = getMaterials(lookup);
+	/**
+	 * 展開済みの一覧を破棄する。データパックの再読み込みやワールドからの切断時に呼ぶ。
+	 */
+	public static void invalidateCache() {
+		tables = null;
+	}
 
-		if (patterns.isEmpty() || materials.isEmpty()) {
-			// パターンまたは素材のレジストリが空であれば、無加工の防具だけを登録する
-			for (Item armorPiece : armorPieces) {
-				entries.add(new ItemStack(armorPiece), ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
-			}
-			return;
+	/**
+	 * 装備タブのいずれかであれば true。
+	 */
+	public static boolean isArmorGroup(RegistryKey<ItemGroup> key) {
+		return ArmorSet.byGroupKey(key) != null;
+	}
+
+	public static boolean isPagedModeEnabled() {
+		return BuildingSupportConfig.getInstance().isArmorTabPagedModeEnabled();
+	}
+
+	/**
+	 * 表示中のページ番号 (0 始まり)。装備タブ以外は 0。
+	 */
+	public static int getPage(RegistryKey<ItemGroup> key) {
+		ArmorSet armorSet = ArmorSet.byGroupKey(key);
+		return armorSet == null ? 0 : clampPage(currentPages.getOrDefault(armorSet, 0));
+	}
+
+	/**
+	 * ページ数。最後に展開したレジストリの模様の数で、未展開の場合は 1。
+	 */
+	public static int getPageCount() {
+		TrimTables current = tables;
+		return current == null ? 1 : current.pageCount();
+	}
+
+	/**
+	 * 表示するページを delta だけ進める。先頭と末尾で止まる。
+	 * @return ページが変わった場合は true。呼び出し側でタブの内容を作り直すこと
+	 */
+	public static boolean turnPage(RegistryKey<ItemGroup> key, int delta) {
+		ArmorSet armorSet = ArmorSet.byGroupKey(key);
+		if (armorSet == null || delta == 0) {
+			return false;
 		}
+		int current = getPage(key);
+		int next = clampPage(current + delta);
+		if (next == current) {
+			return false;
+		}
+		currentPages.put(armorSet, next);
+		return true;
+	}
 
-		for (RegistryEntry<ArmorTrimPattern> pattern : patterns) {
-			for (RegistryEntry<ArmorTrimMaterial> material : materials) {
-				for (Item armorPiece : armorPieces) {
-					entries.add(createTrimmedStack(armorPiece, pattern, material), ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
+	private static int clampPage(int page) {
+		return Math.max(0, Math.min(getPageCount() - 1, page));
+	}
+
+	private static void populate(RegistryWrapper.WrapperLookup lookup, ItemGroup.Entries entries, ArmorSet armorSet) {
+		// 展開済みの配列を順に渡すだけにし、タブの再構築ごとにレジストリを辿らない
+		TrimTables current = tablesFor(lookup);
+		if (!isPagedModeEnabled()) {
+			for (int page = 0; page < current.pageCount(); page++) {
+				for (ItemStack stack : current.page(armorSet, page)) {
+					entries.add(stack, ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
 				}
 			}
+			return;
+		}
+		int page = clampPage(currentPages.getOrDefault(armorSet, 0));
+		for (ItemStack stack : current.page(armorSet, page)) {
+			entries.add(stack, ItemGroup.StackVisibility.PARENT_TAB_ONLY);
+		}
+		for (ItemStack stack : current.searchStacks(armorSet)) {
+			entries.add(stack, ItemGroup.StackVisibility.SEARCH_TAB_ONLY);
 		}
 	}
 
+	private static TrimTables tablesFor(RegistryWrapper.WrapperLookup lookup) {
+		TrimTables current = tables;
+		if (current == null || current.lookup() != lookup) {
+			current = TrimTables.create(lookup);
+			tables = current;
+		}
+		return current;
+	}
+
 	private static ItemStack createTrimmedStack(Item armorPiece, RegistryEntry<ArmorTrimPattern> pattern, RegistryEntry<ArmorTrimMaterial> material) {
 		ItemStack stack = new ItemStack(armorPiece);
 		stack.set(DataComponentTypes.TRIM, new ArmorTrim(material, pattern));
@@ -94,5 +172,131 @@ public final class TrimmedArmorItems {
 		// トリム素材も同様に参照し、空であれば呼び出し元のフォールバックに任せる
 		return lookup.getOrThrow(RegistryKeys.TRIM_MATERIAL).streamEntries().toList();
 	}
-}
 
+	private enum ArmorSet {
+		LEATHER(BuildingSupport.LEATHER_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.LEATHER_HELMET, Items.LEATHER_CHESTPLATE, Items.LEATHER_LEGGINGS, Items.LEATHER_BOOTS),
+		CHAINMAIL(BuildingSupport.CHAIN_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.CHAINMAIL_HELMET, Items.CHAINMAIL_CHESTPLATE, Items.CHAINMAIL_LEGGINGS, Items.CHAINMAIL_BOOTS),
+		IRON(BuildingSupport.IRON_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.IRON_HELMET, Items.IRON_CHESTPLATE, Items.IRON_LEGGINGS, Items.IRON_BOOTS),
+		GOLD(BuildingSupport.GOLD_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.GOLDEN_HELMET, Items.GOLDEN_CHESTPLATE, Items.GOLDEN_LEGGINGS, Items.GOLDEN_BOOTS),
+		DIAMOND(BuildingSupport.DIAMOND_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.DIAMOND_HELMET, Items.DIAMOND_CHESTPLATE, Items.DIAMOND_LEGGINGS, Items.DIAMOND_BOOTS),
+		NETHERITE(BuildingSupport.NETHERITE_EQUIPMENT_ITEM_GROUP_KEY,
+			Items.NETHERITE_HELMET, Items.NETHERITE_CHESTPLATE, Items.NETHERITE_LEGGINGS, Items.NETHERITE_BOOTS);
+
+		private final RegistryKey<ItemGroup> groupKey;
+		private final Item[] pieces;
+
+		ArmorSet(RegistryKey<ItemGroup> groupKey, Item... pieces) {
+			this.groupKey = groupKey;
+			this.pieces = pieces;
+		}
+
+		// 検索タブの代表に使う部位 (チェストプレート)
+		private Item representative() {
+			return pieces[1];
+		}
+
+		private static ArmorSet byGroupKey(RegistryKey<ItemGroup> key) {
+			for (ArmorSet armorSet : values()) {
+				if (armorSet.groupKey.equals(key)) {
+					return armorSet;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 1つのレジストリ参照に対する展開結果。模様ごとのページと検索用の代表は初めて要求されたときに作る。
+	 * 一覧のスタックはタブ間で共有するため変更しないこと (タブから取り出すときはバニラ側でコピーされる)。
+	 */
+	private static final class TrimTables {
+		private final RegistryWrapper.WrapperLookup lookup;
+		private final List<RegistryEntry.Reference<ArmorTrimPattern>> patterns;
+		private final List<RegistryEntry.Reference<ArmorTrimMaterial>> materials;
+		private final ArmorTrim firstTrim;
+		// 防具 -> 模様ごとのページ。未生成のページは null
+		private final Map<ArmorSet, ItemStack[][]> pages = new EnumMap<>(ArmorSet.class);
+		private final Map<ArmorSet, ItemStack[]> searchStacks = new EnumMap<>(ArmorSet.class);
+
+		private TrimTables(RegistryWrapper.WrapperLookup lookup, List<RegistryEntry.Reference<ArmorTrimPattern>> patterns,
+			List<RegistryEntry.Reference<ArmorTrimMaterial>> materials) {
+			this.lookup = lookup;
+			this.patterns = patterns;
+			this.materials = materials;
+			this.firstTrim = hasTrims() ? new ArmorTrim(materials.getFirst(), patterns.getFirst()) : null;
+		}
+
+		private static TrimTables create(RegistryWrapper.WrapperLookup lookup) {
+			return new TrimTables(lookup, getPatterns(lookup), getMaterials(lookup));
+		}
+
+		private RegistryWrapper.WrapperLookup lookup() {
+			return lookup;
+		}
+
+		private ArmorTrim firstTrim() {
+			return firstTrim;
+		}
+
+		private boolean hasTrims() {
+			return !patterns.isEmpty() && !materials.isEmpty();
+		}
+
+		private int pageCount() {
+			return hasTrims() ? patterns.size() : 1;
+		}
+
+		private synchronized ItemStack[] page(ArmorSet armorSet, int index) {
+			ItemStack[][] built = pages.computeIfAbsent(armorSet, ignored -> new ItemStack[pageCount()][]);
+			if (built[index] == null) {
+				built[index] = hasTrims() ? buildPage(armorSet, patterns.get(index)) : buildPlain(armorSet);
+			}
+			return built[index];
+		}
+
+		private synchronized ItemStack[] searchStacks(ArmorSet armorSet) {
+			return searchStacks.computeIfAbsent(armorSet, this::buildSearchStacks);
+		}
+
+		private ItemStack[] buildPage(ArmorSet armorSet, RegistryEntry<ArmorTrimPattern> pattern) {
+			ItemStack[] built = new ItemStack[materials.size() * armorSet.pieces.length];
+			int index = 0;
+			for (RegistryEntry<ArmorTrimMaterial> material : materials) {
+				for (Item armorPiece : armorSet.pieces) {
+					built[index++] = createTrimmedStack(armorPiece, pattern, material);
+				}
+			}
+			return built;
+		}
+
+		// パターンまたは素材のレジストリが空であれば、無加工の防具だけを登録する
+		private static ItemStack[] buildPlain(ArmorSet armorSet) {
+			ItemStack[] plain = new ItemStack[armorSet.pieces.length];
+			for (int i = 0; i < plain.length; i++) {
+				plain[i] = new ItemStack(armorSet.pieces[i]);
+			}
+			return plain;
+		}
+
+		// 模様ごとに先頭の素材で1つ、素材ごとに先頭の模様で1つだけ作る (組み合わせの総数ではなく和に比例する)
+		private ItemStack[] buildSearchStacks(ArmorSet armorSet) {
+			if (!hasTrims()) {
+				return buildPlain(armorSet);
+			}
+			ItemStack[] built = new ItemStack[patterns.size() + materials.size() - 1];
+			int index = 0;
+			for (RegistryEntry<ArmorTrimPattern> pattern : patterns) {
+				built[index++] = createTrimmedStack(armorSet.representative(), pattern, materials.getFirst());
+			}
+			for (int i = 1; i < materials.size(); i++) {
+				built[index++] = createTrimmedStack(armorSet.representative(), patterns.getFirst(), materials.get(i));
+			}
+			return built;
+		}
+	}
+}
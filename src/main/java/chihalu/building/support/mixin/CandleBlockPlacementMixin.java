@@ -15,7 +15,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 public abstract class CandleBlockPlacementMixin {
 	@Inject(method = "getPlacementState", at = @At("RETURN"), cancellable = true)
 	private void utility_toolkit$autoLightPlacement(ItemPlacementContext ctx, CallbackInfoReturnable<BlockState> cir) {
-		if (!BuildingSupportConfig.getInstance().isAutoLightCandlesEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().autoLightCandles()) {
 			return;
 		}
 
@@ -52,8 +52,8 @@ public abstract class CarpetItemPlacementMixin {
 		}
 
 		Block block = ((BlockItem) (Object) this).getBlock();
-		BuildingSupportConfig config = BuildingSupportConfig.getInstance();
-		if (config.isAutoCarpetStringEnabled() && block.getDefaultState().isIn(BlockTags.WOOL_CARPETS)) {
+		BuildingSupportConfig.Snapshot config = BuildingSupportConfig.getInstance().snapshot();
+		if (config.autoCarpetStringEnabled() && block.getDefaultState().isIn(BlockTags.WOOL_CARPETS)) {
 			BlockPos placementPos = context.getBlockPos();
 			BlockState beforeState = serverWorld.getBlockState(placementPos);
 			utility_toolkit$carpetPlacementTracked = true;
@@ -67,10 +67,10 @@ public abstract class CarpetItemPlacementMixin {
 		ActionResult result = cir.getReturnValue();
 		World world = context.getWorld();
 		ServerWorld serverWorld = world instanceof ServerWorld ? (ServerWorld) world : null;
-		BuildingSupportConfig config = BuildingSupportConfig.getInstance();
+		BuildingSupportConfig.Snapshot config = BuildingSupportConfig.getInstance().snapshot();
 		BlockPos placementPos = context.getBlockPos();
 
-		if (serverWorld != null && result.isAccepted() && config.isAutoLightCandlesEnabled()) {
+		if (serverWorld != null && result.isAccepted() && config.autoLightCandles()) {
 			BlockState state = serverWorld.getBlockState(placementPos);
 			if ((!BuildingSupport.isAutoLightVanillaRestricted() || BuildingSupport.isVanillaBlock(state.getBlock()))
 				&& state.getBlock() instanceof CandleCakeBlock
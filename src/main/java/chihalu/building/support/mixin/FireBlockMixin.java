@@ -7,9 +7,14 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import chihalu.building.support.config.BuildingSupportConfig;
-import chihalu.building.support.init.UtilityToolkitTags;
+import chihalu.building.support.init.ProtectionTargetIndex;
+import chihalu.building.support.protection.FireTickBudget;
+import chihalu.building.support.protection.ProtectionType;
+import chihalu.building.support.protection.ProtectionZones;
+import net.minecraft.block.Block;
 import net.minecraft.block.FireBlock;
 import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.World;
@@ -17,6 +22,18 @@ import net.minecraft.world.WorldView;
 
 @Mixin(FireBlock.class)
 public class FireBlockMixin {
+	/**
+	 * 炎の予約ティックが上限を超えた場合は実行せず、少し先へ予約し直す。
+	 */
+	@Inject(method = "scheduledTick", at = @At("HEAD"), cancellable = true)
+	private void utility_toolkit$deferOverBudget(BlockState state, ServerWorld world, BlockPos pos, Random random, CallbackInfo ci) {
+		if (FireTickBudget.tryConsume(world, pos)) {
+			return;
+		}
+		world.scheduleBlockTick(pos, (Block) (Object) this, FireTickBudget.deferralDelay(random));
+		ci.cancel();
+	}
+
 	/**
 	 * 危険建材保護設定が有効な場合は炎が広がる処理そのものを打ち切る。
 	 */
@@ -26,11 +43,11 @@ public class FireBlockMixin {
 		cancellable = true
 	)
 	private void utility_toolkit$cancelHazardSpread(World world, BlockPos pos, int chance, Random random, int age, CallbackInfo ci) {
-		if (!BuildingSupportConfig.getInstance().isHazardFireProtectionEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().preventHazardFireSpread()) {
 			return;
 		}
 		BlockState fireState = world.getBlockState(pos);
-		if (!fireState.isIn(UtilityToolkitTags.FIRE_PROTECTION_TARGETS)) {
+		if (!ProtectionTargetIndex.isFireProtected(fireState) || !ProtectionZones.isProtected(world, pos, ProtectionType.FIRE)) {
 			return;
 		}
 		ci.cancel();
@@ -45,10 +62,10 @@ public class FireBlockMixin {
 		cancellable = true
 	)
 	private void utility_toolkit$zeroBurnChance(WorldView world, BlockPos pos, CallbackInfoReturnable<Integer> cir) {
-		if (!BuildingSupportConfig.getInstance().isHazardFireProtectionEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().preventHazardFireSpread()) {
 			return;
 		}
-		if (!world.getBlockState(pos).isIn(UtilityToolkitTags.FIRE_PROTECTION_TARGETS)) {
+		if (!ProtectionTargetIndex.isFireProtected(world.getBlockState(pos)) || !ProtectionZones.isProtected(world, pos, ProtectionType.FIRE)) {
 			return;
 		}
 		cir.setReturnValue(0);
@@ -1,7 +1,9 @@
 package chihalu.building.support.mixin;
 
 import chihalu.building.support.config.BuildingSupportConfig;
-import chihalu.building.support.init.UtilityToolkitTags;
+import chihalu.building.support.init.ProtectionTargetIndex;
+import chihalu.building.support.protection.ProtectionType;
+import chihalu.building.support.protection.ProtectionZones;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.FrostedIceBlock;
 import net.minecraft.server.world.ServerWorld;
@@ -16,10 +18,10 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 public abstract class FrostedIceBlockMixin {
 	@Inject(method = "scheduledTick", at = @At("HEAD"), cancellable = true)
 	private void utility_toolkit$preventScheduledTick(BlockState state, ServerWorld world, BlockPos pos, Random random, CallbackInfo ci) {
-		if (!BuildingSupportConfig.getInstance().isPreventIceMeltingEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().preventIceMelting()) {
 			return;
 		}
-		if (!state.isIn(UtilityToolkitTags.ICE_PROTECTION_TARGETS)) {
+		if (!ProtectionTargetIndex.isIceProtected(state) || !ProtectionZones.isProtected(world, pos, ProtectionType.ICE)) {
 			return;
 		}
 		ci.cancel();
@@ -1,7 +1,9 @@
 package chihalu.building.support.mixin;
 
 import chihalu.building.support.config.BuildingSupportConfig;
-import chihalu.building.support.init.UtilityToolkitTags;
+import chihalu.building.support.init.ProtectionTargetIndex;
+import chihalu.building.support.protection.ProtectionType;
+import chihalu.building.support.protection.ProtectionZones;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.IceBlock;
 import net.minecraft.server.world.ServerWorld;
@@ -18,10 +20,10 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 public abstract class IceBlockMixin {
 	@Inject(method = "randomTick", at = @At("HEAD"), cancellable = true)
 	private void utility_toolkit$preventRandomTickMelting(BlockState state, ServerWorld world, BlockPos pos, Random random, CallbackInfo ci) {
-		if (!BuildingSupportConfig.getInstance().isPreventIceMeltingEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().preventIceMelting()) {
 			return;
 		}
-		if (!state.isIn(UtilityToolkitTags.ICE_PROTECTION_TARGETS)) {
+		if (!ProtectionTargetIndex.isIceProtected(state) || !ProtectionZones.isProtected(world, pos, ProtectionType.ICE)) {
 			return;
 		}
 		ci.cancel();
@@ -29,10 +31,10 @@ public abstract class IceBlockMixin {
 
 	@Inject(method = "melt", at = @At("HEAD"), cancellable = true)
 	private void utility_toolkit$preventMelt(BlockState state, World world, BlockPos pos, CallbackInfo ci) {
-		if (!BuildingSupportConfig.getInstance().isPreventIceMeltingEnabled()) {
+		if (!BuildingSupportConfig.getInstance().snapshot().preventIceMelting()) {
 			return;
 		}
-		if (!state.isIn(UtilityToolkitTags.ICE_PROTECTION_TARGETS)) {
+		if (!ProtectionTargetIndex.isIceProtected(state) || !ProtectionZones.isProtected(world, pos, ProtectionType.ICE)) {
 			return;
 		}
 		ci.cancel();
@@ -40,7 +42,8 @@ public abstract class IceBlockMixin {
 
 	@Redirect(method = "afterBreak", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/World;setBlockState(Lnet/minecraft/util/math/BlockPos;Lnet/minecraft/block/BlockState;)Z"))
 	private boolean utility_toolkit$skipWaterOnBreak(World world, BlockPos pos, BlockState state) {
-		if (BuildingSupportConfig.getInstance().isPreventIceMeltingEnabled() && world.getBlockState(pos).isIn(UtilityToolkitTags.ICE_PROTECTION_TARGETS)) {
+		if (BuildingSupportConfig.getInstance().snapshot().preventIceMelting() && ProtectionTargetIndex.isIceProtected(world.getBlockState(pos))
+			&& ProtectionZones.isProtected(world, pos, ProtectionType.ICE)) {
 			return false;
 		}
 		return world.setBlockState(pos, state);
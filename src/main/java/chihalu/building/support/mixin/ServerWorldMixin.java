@@ -0,0 +1,44 @@
+package chihalu.building.support.mixin;
+
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.llamalad7.mixinextras.sugar.Local;
+import com.llamalad7.mixinextras.sugar.Share;
+import com.llamalad7.mixinextras.sugar.ref.LocalLongRef;
+import chihalu.building.support.protection.ProtectionZones;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerWorld.class)
+public abstract class ServerWorldMixin {
+	/**
+	 * 凍結するセクションのビットマスクを、チャンクごとに1回だけ引いておく。
+	 */
+	@Inject(method = "tickChunk", at = @At("HEAD"))
+	private void utility_toolkit$loadFrozenSections(WorldChunk chunk, int randomTickSpeed, CallbackInfo ci,
+			@Share("frozenSections") LocalLongRef frozenSections) {
+		frozenSections.set(ProtectionZones.getFrozenSections((ServerWorld) (Object) this, chunk.getPos()));
+	}
+
+	/**
+	 * 凍結区域に掛かるセクションは、ランダムティックの抽選ごと飛ばす。
+	 * ブロック単位で打ち消すのではなく、セクションにランダムティック対象がないものとして扱う。
+	 * <p>
+	 * セクション番号はループの添字をそのまま使う。この時点の int のローカルは
+	 * randomTickSpeed・チャンクの開始 X・開始 Z・添字の順に並ぶため ordinal は3。
+	 */
+	@WrapOperation(method = "tickChunk", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/ChunkSection;hasRandomTicks()Z"))
+	private boolean utility_toolkit$skipFrozenSections(ChunkSection section, Operation<Boolean> original,
+			@Local(ordinal = 3) int sectionIndex, @Share("frozenSections") LocalLongRef frozenSections) {
+		long frozen = frozenSections.get();
+		if (frozen != 0L && sectionIndex < Long.SIZE && (frozen & (1L << sectionIndex)) != 0L) {
+			return false;
+		}
+		return original.call(section);
+	}
+}
@@ -0,0 +1,96 @@
+package chihalu.building.support.protection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import chihalu.building.support.config.BuildingSupportConfig;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.random.Random;
+
+/**
+ * 炎の予約ティックを、ディメンション全体とチャンクごとの上限に収める。
+ * <p>
+ * 上限を超えた分は実行せずに数ティック後へ予約し直すため、大火事でもティック時間は一定に保たれ、炎自体は遅れて燃え進む。
+ * 使用量はワールドの時刻が進んだ時点でまとめて0に戻す。すべてサーバースレッドから呼ばれる前提。
+ */
+public final class FireTickBudget {
+	// 後回しにした炎を同じティックへ集めないよう、予約し直す間隔をばらつかせる
+	private static final int MIN_DEFERRAL_DELAY = 1;
+	private static final int MAX_DEFERRAL_DELAY = 10;
+	private static final Map<ServerWorld, WorldBudget> BUDGETS = new ConcurrentHashMap<>();
+
+	private FireTickBudget() {
+	}
+
+	public static void register() {
+		ServerWorldEvents.UNLOAD.register((server, world) -> BUDGETS.remove(world));
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> BUDGETS.clear());
+	}
+
+	/**
+	 * 指定した位置の炎の予約ティックを今実行してよいかを判定し、よければ使用量を1つ加える。
+	 * 上限が設定されていなければ常に true を返す。
+	 */
+	public static boolean tryConsume(ServerWorld world, BlockPos pos) {
+		BuildingSupportConfig.Snapshot config = BuildingSupportConfig.getInstance().snapshot();
+		int worldLimit = config.fireTickBudget();
+		int chunkLimit = config.fireTickChunkBudget();
+		if (worldLimit <= 0 && chunkLimit <= 0) {
+			return true;
+		}
+		WorldBudget budget = BUDGETS.computeIfAbsent(world, key -> new WorldBudget());
+		budget.resetIfNewTick(world.getTime());
+		if (worldLimit > 0 && budget.used >= worldLimit) {
+			budget.deferred++;
+			return false;
+		}
+		if (chunkLimit > 0) {
+			long chunkPos = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+			int chunkUsed = budget.chunkUsed.get(chunkPos);
+			if (chunkUsed >= chunkLimit) {
+				budget.deferred++;
+				return false;
+			}
+			budget.chunkUsed.put(chunkPos, chunkUsed + 1);
+		}
+		budget.used++;
+		return true;
+	}
+
+	/**
+	 * 後回しにした炎を、次に実行するまでのティック数。
+	 */
+	public static int deferralDelay(Random random) {
+		return random.nextBetween(MIN_DEFERRAL_DELAY, MAX_DEFERRAL_DELAY);
+	}
+
+	/**
+	 * このディメンションで、上限により後回しにした予約ティックの累計。
+	 */
+	public static long getDeferredCount(ServerWorld world) {
+		WorldBudget budget = BUDGETS.get(world);
+		return budget != null ? budget.deferred : 0L;
+	}
+
+	private static final class WorldBudget {
+		private final Long2IntOpenHashMap chunkUsed = new Long2IntOpenHashMap();
+		private long tick = Long.MIN_VALUE;
+		private int used;
+		private long deferred;
+
+		private void resetIfNewTick(long time) {
+			if (tick == time) {
+				return;
+			}
+			tick = time;
+			used = 0;
+			chunkUsed.clear();
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package chihalu.building.support.protection;
+
+import com.mojang.serialization.Codec;
+
+import net.minecraft.util.StringIdentifiable;
+
+/**
+ * 保護区域ごとに有効にできる保護の種類。
+ */
+public enum ProtectionType implements StringIdentifiable {
+	FIRE("fire"),
+	ICE("ice"),
+	// 区域に掛かるチャンクセクションのランダムティックを丸ごと止める
+	FREEZE("freeze");
+
+	public static final Codec<ProtectionType> CODEC = StringIdentifiable.createCodec(ProtectionType::values);
+
+	private final String id;
+
+	ProtectionType(String id) {
+		this.id = id;
+	}
+
+	public String id() {
+		return id;
+	}
+
+	@Override
+	public String asString() {
+		return id;
+	}
+
+	public static ProtectionType byId(String id) {
+		if (id == null || id.isBlank()) {
+			return null;
+		}
+		for (ProtectionType type : values()) {
+			if (type.id.equalsIgnoreCase(id.trim())) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
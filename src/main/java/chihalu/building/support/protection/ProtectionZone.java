@@ -0,0 +1,31 @@
+package chihalu.building.support.protection;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * 名前付きの直方体の保護区域。ディメンションごとに {@link ProtectionZoneState} へ保存される。
+ */
+public record ProtectionZone(String name, BlockBox box, Set<ProtectionType> types) {
+	public static final Codec<ProtectionZone> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+		Codec.STRING.fieldOf("name").forGetter(ProtectionZone::name),
+		BlockBox.CODEC.fieldOf("box").forGetter(ProtectionZone::box),
+		ProtectionType.CODEC.listOf().fieldOf("types").forGetter(zone -> List.copyOf(zone.types()))
+	).apply(instance, (name, box, types) -> new ProtectionZone(name, box, Set.copyOf(types))));
+
+	public ProtectionZone {
+		types = Collections.unmodifiableSet(types.isEmpty() ? EnumSet.noneOf(ProtectionType.class) : EnumSet.copyOf(types));
+	}
+
+	public boolean covers(BlockPos pos, ProtectionType type) {
+		return types.contains(type) && box.contains(pos);
+	}
+}
@@ -0,0 +1,173 @@
+package chihalu.building.support.protection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mojang.serialization.Codec;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import chihalu.building.support.BuildingSupport;
+import net.minecraft.datafixer.DataFixTypes;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.PersistentStateType;
+
+/**
+ * ディメンションごとの保護区域の一覧と、チャンク座標から区域を引くための索引。
+ * 索引は区域が変わるたびに丸ごと作り直して差し替えるため、判定側は座標1つにつきマップの参照1回で済む。
+ * <p>
+ * 凍結 ({@link ProtectionType#FREEZE}) の区域は、チャンクごとに止めるセクションのビットマスクとしても持つ。
+ * ビットの位置はワールド最下段を0としたセクション番号で、64段を超える部分は対象外とする。
+ */
+public final class ProtectionZoneState extends PersistentState {
+	private static final String STORAGE_KEY = BuildingSupport.MOD_ID + "_protection_zones";
+	private static final Codec<ProtectionZoneState> CODEC = ProtectionZone.CODEC.listOf()
+		.xmap(ProtectionZoneState::new, ProtectionZoneState::toList);
+	private static final PersistentStateType<ProtectionZoneState> TYPE = new PersistentStateType<>(
+		STORAGE_KEY,
+		context -> new ProtectionZoneState(),
+		context -> CODEC,
+		DataFixTypes.SAVED_DATA_SCOREBOARD
+	);
+	private static final ProtectionZone[] NO_ZONES = new ProtectionZone[0];
+
+	private final Map<String, ProtectionZone> zones = new LinkedHashMap<>();
+	// チャンク座標 (ChunkPos#toLong) -> そのチャンクに掛かる区域
+	private volatile Long2ObjectMap<ProtectionZone[]> chunkIndex = new Long2ObjectOpenHashMap<>();
+	// チャンク座標 -> ランダムティックを止めるセクションのビットマスク
+	private volatile Long2LongMap frozenSections = new Long2LongOpenHashMap();
+	private volatile Set<ProtectionType> activeTypes = EnumSet.noneOf(ProtectionType.class);
+	// セクション番号の基準。ワールドに結び付けるまでは凍結の索引を作らない
+	private int bottomSectionCoord;
+	private int sectionCount;
+
+	private ProtectionZoneState() {
+	}
+
+	private ProtectionZoneState(List<ProtectionZone> entries) {
+		for (ProtectionZone zone : entries) {
+			zones.put(zone.name(), zone);
+		}
+		rebuildIndex();
+	}
+
+	private List<ProtectionZone> toList() {
+		return List.copyOf(zones.values());
+	}
+
+	static ProtectionZoneState load(ServerWorld world) {
+		ProtectionZoneState state = world.getPersistentStateManager().getOrCreate(TYPE);
+		state.attach(world.getBottomSectionCoord(), world.countVerticalSections());
+		return state;
+	}
+
+	private void attach(int bottomSectionCoord, int sectionCount) {
+		if (this.bottomSectionCoord == bottomSectionCoord && this.sectionCount == sectionCount) {
+			return;
+		}
+		this.bottomSectionCoord = bottomSectionCoord;
+		this.sectionCount = sectionCount;
+		rebuildIndex();
+	}
+
+	/**
+	 * その種類の保護を持つ区域が1つでも登録されているかを返す。
+	 */
+	public boolean hasZones(ProtectionType type) {
+		return activeTypes.contains(type);
+	}
+
+	public Collection<ProtectionZone> getZones() {
+		return List.copyOf(zones.values());
+	}
+
+	/**
+	 * 区域を登録する。同じ名前の区域があれば置き換える。
+	 */
+	public void putZone(ProtectionZone zone) {
+		zones.put(zone.name(), zone);
+		rebuildIndex();
+		markDirty();
+	}
+
+	public boolean removeZone(String name) {
+		if (zones.remove(name) == null) {
+			return false;
+		}
+		rebuildIndex();
+		markDirty();
+		return true;
+	}
+
+	/**
+	 * 指定した座標が、その種類の保護を持つ区域の中にあるか判定する。
+	 */
+	public boolean covers(BlockPos pos, ProtectionType type) {
+		ProtectionZone[] candidates = chunkIndex.getOrDefault(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4), NO_ZONES);
+		for (ProtectionZone zone : candidates) {
+			if (zone.covers(pos, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 指定したチャンクで、ランダムティックを止めるセクションのビットマスクを返す。対象がなければ0。
+	 */
+	public long getFrozenSections(long chunkPos) {
+		return frozenSections.get(chunkPos);
+	}
+
+	private void rebuildIndex() {
+		Long2ObjectOpenHashMap<List<ProtectionZone>> grouped = new Long2ObjectOpenHashMap<>();
+		Long2LongOpenHashMap frozen = new Long2LongOpenHashMap();
+		EnumSet<ProtectionType> types = EnumSet.noneOf(ProtectionType.class);
+		for (ProtectionZone zone : zones.values()) {
+			types.addAll(zone.types());
+			long sectionMask = zone.types().contains(ProtectionType.FREEZE) ? sectionMask(zone) : 0L;
+			int minChunkX = zone.box().getMinX() >> 4;
+			int maxChunkX = zone.box().getMaxX() >> 4;
+			int minChunkZ = zone.box().getMinZ() >> 4;
+			int maxChunkZ = zone.box().getMaxZ() >> 4;
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					long chunkPos = ChunkPos.toLong(chunkX, chunkZ);
+					grouped.computeIfAbsent(chunkPos, key -> new ArrayList<>(1)).add(zone);
+					if (sectionMask != 0L) {
+						frozen.put(chunkPos, frozen.get(chunkPos) | sectionMask);
+					}
+				}
+			}
+		}
+		Long2ObjectOpenHashMap<ProtectionZone[]> index = new Long2ObjectOpenHashMap<>(grouped.size());
+		for (Long2ObjectMap.Entry<List<ProtectionZone>> entry : grouped.long2ObjectEntrySet()) {
+			index.put(entry.getLongKey(), entry.getValue().toArray(NO_ZONES));
+		}
+		chunkIndex = index;
+		frozenSections = frozen;
+		activeTypes = types;
+	}
+
+	private long sectionMask(ProtectionZone zone) {
+		int limit = Math.min(sectionCount, Long.SIZE);
+		int from = Math.max(0, (zone.box().getMinY() >> 4) - bottomSectionCoord);
+		int to = Math.min(limit - 1, (zone.box().getMaxY() >> 4) - bottomSectionCoord);
+		long mask = 0L;
+		for (int index = from; index <= to; index++) {
+			mask |= 1L << index;
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,55 @@
+package chihalu.building.support.protection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldView;
+
+/**
+ * 保護区域の判定の入口。延焼・融解の各 Mixin から呼ばれる。
+ * <p>
+ * その種類の区域が1つも登録されていないワールドでは、従来どおりワールド全体を保護対象として扱う。
+ * 区域がある場合は区域の中だけを保護し、それ以外の場所ではバニラの挙動に戻す。
+ * 凍結だけは区域の中でのみ働き、区域がなければ何もしない。
+ */
+public final class ProtectionZones {
+	// PersistentStateManager の参照を毎回行わないよう、ワールドごとに状態を保持する
+	private static final Map<ServerWorld, ProtectionZoneState> STATES = new ConcurrentHashMap<>();
+
+	private ProtectionZones() {
+	}
+
+	public static void register() {
+		ServerWorldEvents.UNLOAD.register((server, world) -> STATES.remove(world));
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> STATES.clear());
+	}
+
+	public static ProtectionZoneState get(ServerWorld world) {
+		return STATES.computeIfAbsent(world, ProtectionZoneState::load);
+	}
+
+	/**
+	 * 指定した座標が、その種類の保護を受けるかどうかを返す。
+	 * サーバー側のワールド以外 (生成中の領域など) では区域を引けないため、保護対象として扱う。
+	 */
+	public static boolean isProtected(WorldView world, BlockPos pos, ProtectionType type) {
+		if (!(world instanceof ServerWorld serverWorld)) {
+			return true;
+		}
+		ProtectionZoneState state = get(serverWorld);
+		return !state.hasZones(type) || state.covers(pos, type);
+	}
+
+	/**
+	 * 指定したチャンクで、ランダムティックを止めるセクションのビットマスクを返す。
+	 */
+	public static long getFrozenSections(ServerWorld world, ChunkPos chunkPos) {
+		ProtectionZoneState state = get(world);
+		return state.hasZones(ProtectionType.FREEZE) ? state.getFrozenSections(chunkPos.toLong()) : 0L;
+	}
+}
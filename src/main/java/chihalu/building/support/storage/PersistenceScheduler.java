@@ -0,0 +1,206 @@
+package chihalu.building.support.storage;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chihalu.building.support.BuildingSupport;
+
+/**
+ * 履歴・お気に入り・カスタムタブで共有する保存用 I/O スレッド。
+ * <p>
+ * {@link #execute(Runnable)} で積んだ処理は積んだ順にすぐ実行する。
+ * {@link #schedule(Path, Runnable)} で積んだ書き出しは対象ファイルごとにまとめ、
+ * 待機時間内に届いた最後の1件だけを実行する。読み込みや削除の前には {@link #flush(Path)} か
+ * {@link #cancel(Path)} を呼び、待機中の書き出しとの前後関係を確定させること。
+ */
+public final class PersistenceScheduler implements Executor {
+	private static final PersistenceScheduler INSTANCE = new PersistenceScheduler();
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				INSTANCE.shutdown();
+			} catch (Exception ignored) {
+			}
+		}, "UtilityToolkit-PersistenceShutdown"));
+	}
+	// 同じファイルへの書き出しをまとめる待機時間
+	public static final long DEBOUNCE_MILLIS = 1000L;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+	private final ScheduledThreadPoolExecutor executor;
+	// 対象ファイル -> 待機中の書き出し。内容はこのインスタンスのモニタで保護する
+	private final Map<Path, Runnable> pendingWrites = new LinkedHashMap<>();
+	// execute で積まれ、まだ実行されていない処理の数
+	private final AtomicInteger queuedTasks = new AtomicInteger();
+	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
+
+	private PersistenceScheduler() {
+		executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "UtilityToolkit-PersistenceIO");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// 終了時は待機中の書き出しを flushAll で前に出してから止めるため、遅延タイマー自体は破棄してよい
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	public static PersistenceScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 処理を順番待ちの末尾に積む。待機中の書き出しより先に実行されることがある点に注意。
+	 */
+	@Override
+	public void execute(Runnable task) {
+		queuedTasks.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				try {
+					runSafely(task);
+				} finally {
+					queuedTasks.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException exception) {
+			queuedTasks.decrementAndGet();
+			throw exception;
+		}
+	}
+
+	/**
+	 * 対象ファイルへの書き出しを予約する。待機中の書き出しがあれば置き換える。
+	 */
+	public void schedule(Path target, Runnable write) {
+		schedule(target, write, DEBOUNCE_MILLIS, true);
+	}
+
+	/**
+	 * 対象ファイルに待機中の書き出しが無い場合だけ予約する。保存失敗時の再試行用で、
+	 * 既に新しい内容が予約されていればそちらを優先する。
+	 * @return 予約した場合 true
+	 */
+	public boolean scheduleIfAbsent(Path target, Runnable write, long delayMillis) {
+		return schedule(target, write, delayMillis, false);
+	}
+
+	private synchronized boolean schedule(Path target, Runnable write, long delayMillis, boolean replace) {
+		if (shuttingDown.get()) {
+			return false;
+		}
+		Runnable previous = pendingWrites.get(target);
+		if (previous != null && !replace) {
+			return false;
+		}
+		pendingWrites.put(target, write);
+		if (previous == null) {
+			// 最初の予約から一定時間で書き出す。予約のたびに延長はしないため、更新が続いても書き出しは止まらない
+			try {
+				executor.schedule(() -> runPending(target), delayMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException exception) {
+				pendingWrites.remove(target);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public synchronized boolean isPending(Path target) {
+		return pendingWrites.containsKey(target);
+	}
+
+	/**
+	 * 待機中の書き出しがあれば、待機時間を待たずに順番待ちの末尾へ移す。
+	 * 続けて積んだ読み込みは、この書き出しの後に実行される。
+	 */
+	public synchronized void flush(Path target) {
+		Runnable write = pendingWrites.remove(target);
+		if (write != null) {
+			enqueue(write);
+		}
+	}
+
+	/**
+	 * 待機中の書き出しを取り消す。対象ファイルを削除する前に呼ぶ。
+	 */
+	public synchronized void cancel(Path target) {
+		pendingWrites.remove(target);
+	}
+
+	/**
+	 * 待機中のすべての書き出しを順番待ちへ移す。ワールド退出時と終了時に呼ぶ。
+	 */
+	public synchronized void flushAll() {
+		if (pendingWrites.isEmpty()) {
+			return;
+		}
+		BuildingSupport.LOGGER.debug("Flushing {} pending writes", pendingWrites.size());
+		for (Runnable write : pendingWrites.values()) {
+			enqueue(write);
+		}
+		pendingWrites.clear();
+	}
+
+	/**
+	 * 待機中の書き出しと、まだ実行されていない処理の合計数。
+	 */
+	public synchronized int getQueueDepth() {
+		return pendingWrites.size() + queuedTasks.get();
+	}
+
+	public boolean isShutdown() {
+		return shuttingDown.get();
+	}
+
+	/**
+	 * 待機中の書き出しをすべて実行してから I/O スレッドを止める。
+	 */
+	public void shutdown() {
+		if (!shuttingDown.compareAndSet(false, true)) {
+			return;
+		}
+		flushAll();
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				BuildingSupport.LOGGER.warn("Timed out while waiting for {} pending writes", getQueueDepth());
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void enqueue(Runnable write) {
+		try {
+			execute(write);
+		} catch (RejectedExecutionException exception) {
+			BuildingSupport.LOGGER.warn("Dropped a pending write because the persistence thread has stopped");
+		}
+	}
+
+	private void runPending(Path target) {
+		Runnable write;
+		synchronized (this) {
+			write = pendingWrites.remove(target);
+		}
+		if (write != null) {
+			runSafely(write);
+		}
+	}
+
+	// 例外で I/O スレッドが止まったり、Future に握りつぶされたりしないようにする
+	private static void runSafely(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException exception) {
+			BuildingSupport.LOGGER.error("Persistence task failed", exception);
+		}
+	}
+}
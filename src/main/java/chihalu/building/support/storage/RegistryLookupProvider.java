@@ -0,0 +1,48 @@
+package chihalu.building.support.storage;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.minecraft.registry.BuiltinRegistries;
+import net.minecraft.registry.RegistryWrapper;
+
+/**
+ * 保存データの変換やタブのアイコン生成で使うレジストリ参照を一元管理する。
+ * <p>
+ * ワールド接続中はサーバーから受け取った参照を、それ以外では組み込みレジストリを返す。
+ * 組み込みレジストリの構築は重いため、初めて必要になったときに1回だけ行い、以後は同じインスタンスを使い回す。
+ */
+public final class RegistryLookupProvider {
+	// null の間は組み込みレジストリを使う
+	private static final AtomicReference<RegistryWrapper.WrapperLookup> OVERRIDE = new AtomicReference<>();
+
+	private RegistryLookupProvider() {
+	}
+
+	/**
+	 * 現在有効なレジストリ参照を返す。
+	 */
+	public static RegistryWrapper.WrapperLookup get() {
+		RegistryWrapper.WrapperLookup lookup = OVERRIDE.get();
+		return lookup != null ? lookup : builtin();
+	}
+
+	/**
+	 * 組み込みレジストリの参照を返す。初回呼び出し時にだけ構築する。
+	 */
+	public static RegistryWrapper.WrapperLookup builtin() {
+		return BuiltinHolder.LOOKUP;
+	}
+
+	static void set(RegistryWrapper.WrapperLookup lookup) {
+		OVERRIDE.set(lookup);
+	}
+
+	static void reset() {
+		OVERRIDE.set(null);
+	}
+
+	// クラスの初期化はJVMが1回だけ排他的に行うため、遅延生成と共有を同時に満たせる
+	private static final class BuiltinHolder {
+		private static final RegistryWrapper.WrapperLookup LOOKUP = BuiltinRegistries.createWrapperLookup();
+	}
+}
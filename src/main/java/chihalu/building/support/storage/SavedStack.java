@@ -1,18 +1,34 @@
 package chihalu.building.support.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.mojang.serialization.DataResult;
 import com.mojang.serialization.JsonOps;
 
+import net.minecraft.component.ComponentChanges;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.nbt.NbtString;
 import net.minecraft.nbt.StringNbtReader;
-import net.minecraft.registry.BuiltinRegistries;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.RegistryOps;
 import net.minecraft.registry.RegistryWrapper;
@@ -22,20 +38,54 @@ import chihalu.building.support.BuildingSupport;
 
 /**
  * 装飾や染色などの追加データを含んだ ItemStack を安全に保存・復元するためのスナップショット。
+ * <p>
+ * コンポーネントを持つスタックは NBT のバイト列 (大きいものは圧縮) だけを保持し、
+ * 表示で必要になったときに初めて ItemStack へ復元する。復元結果は件数に上限のあるキャッシュへ置くため、
+ * メモリ使用量は保存件数ではなく画面に出ている件数に比例する。
  */
 public final class SavedStack {
-	private static volatile RegistryWrapper.WrapperLookup CURRENT_LOOKUP = BuiltinRegistries.createWrapperLookup();
-	private static volatile RegistryOps<NbtElement> NBT_OPS = RegistryOps.of(NbtOps.INSTANCE, CURRENT_LOOKUP);
-	private static volatile RegistryOps<JsonElement> JSON_OPS = RegistryOps.of(JsonOps.INSTANCE, CURRENT_LOOKUP);
+	// 変換用の Ops はスレッドごとに持つ。読み込み時の並列復元で、Ops 内部のキャッシュを複数スレッドから触らせない
+	private static final ThreadLocal<RegistryContext> THREAD_CONTEXT = new ThreadLocal<>();
+
+	// uniqueKey() が返す文字列の長さ (64 ビットの指紋を16進数で表したもの)
+	public static final int UNIQUE_KEY_LENGTH = 16;
+	private static final HexFormat HEX = HexFormat.of();
+	private static final String NBT_ID = "id";
+	private static final String NBT_COUNT = "count";
+	private static final String NBT_COMPONENTS = "components";
+	// これより大きい NBT だけを圧縮して持つ。小さいものは圧縮しても縮まない
+	private static final int COMPRESSION_THRESHOLD = 256;
+	// 復元済み ItemStack を保持する件数。クリエイティブタブ数ページ分あれば足りる
+	private static final int DECODED_CACHE_SIZE = 512;
+	private static final Map<SavedStack, ItemStack> DECODED_CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<SavedStack, ItemStack> eldest) {
+			return size() > DECODED_CACHE_SIZE;
+		}
+	};
 
 	private final Identifier id;
-	private final ItemStack stack;
-	private final String uniqueKey;
+	// アイテム ID とコンポーネントから求めた指紋。同一判定とハッシュに使い、SNBT は保存時にだけ作る
+	private final long fingerprint;
+	private final int count;
+	// コンポーネントを持たないスタック (または NBT へ変換できなかったスタック) はそのまま持つ
+	private final ItemStack plain;
+	// コンポーネントを持つスタックの NBT (ネットワーク形式)。compressed の場合は Deflate 済み
+	private final byte[] encoded;
+	private final boolean compressed;
 
-	private SavedStack(Identifier id, ItemStack stack) {
+	private SavedStack(Identifier id, long fingerprint, int count, ItemStack plain, byte[] encoded, boolean compressed) {
 		this.id = id;
-		this.stack = stack.copy();
-		this.uniqueKey = buildUniqueKey(this.id, this.stack);
+		this.fingerprint = fingerprint;
+		this.count = count;
+		this.plain = plain;
+		this.encoded = encoded;
+		this.compressed = compressed;
+	}
+
+	// 生成したスナップショットは必ずプールを通し、同じ内容なら既存のインスタンスを共有する
+	private static SavedStack ofPlain(Identifier id, ItemStack stack, long fingerprint) {
+		return SavedStackInterner.intern(new SavedStack(id, fingerprint, stack.getCount(), stack.copy(), null, false));
 	}
 
 	/**
@@ -50,7 +100,18 @@ public final class SavedStack {
 		if (!Registries.ITEM.containsId(identifier)) {
 			return Optional.empty();
 		}
-		return Optional.of(new SavedStack(identifier, original));
+		ComponentChanges changes = original.getComponentChanges();
+		if (changes.isEmpty()) {
+			return Optional.of(ofPlain(identifier, original, StackFingerprint.of(identifier, null)));
+		}
+		DataResult<NbtElement> result = ItemStack.CODEC.encodeStart(context().nbtOps(), original);
+		if (result.result().orElse(null) instanceof NbtCompound compound) {
+			return Optional.of(fromEncoded(identifier, compound));
+		}
+		// 変換できないコンポーネントは表記を指紋に使い、スタックはそのまま持つ (同じ起動中の同一判定には足りる)
+		String error = result.error().map(partial -> partial.message()).orElse("unknown");
+		BuildingSupport.LOGGER.warn("Failed to encode ItemStack NBT for {}: {}", original, error);
+		return Optional.of(ofPlain(identifier, original, StackFingerprint.of(identifier, NbtString.of(changes.toString()))));
 	}
 
 	/**
@@ -60,7 +121,7 @@ public final class SavedStack {
 		if (id == null || !Registries.ITEM.containsId(id)) {
 			return Optional.empty();
 		}
-		return Optional.of(new SavedStack(id, new ItemStack(Registries.ITEM.get(id))));
+		return Optional.of(ofPlain(id, new ItemStack(Registries.ITEM.get(id)), StackFingerprint.of(id, null)));
 	}
 
 	/**
@@ -75,33 +136,65 @@ public final class SavedStack {
 			return Optional.empty();
 		}
 		if (form.nbt != null && !form.nbt.isBlank()) {
-			ItemStack decoded = decodeStack(form.nbt);
-			if (!decoded.isEmpty()) {
-				return Optional.of(new SavedStack(identifier, decoded));
+			Optional<SavedStack> parsed = parseNbtString(form.nbt).flatMap(SavedStack::fromTextNbt);
+			if (parsed.isPresent()) {
+				return parsed;
 			}
 		}
 		if (form.stack != null && !form.stack.isJsonNull()) {
 			ItemStack decoded = decodeStack(form.stack);
 			if (!decoded.isEmpty()) {
-				return Optional.of(new SavedStack(identifier, decoded));
+				return capture(decoded);
 			}
 		}
-		return Optional.of(new SavedStack(identifier, new ItemStack(Registries.ITEM.get(identifier))));
+		return fromId(identifier);
 	}
 
-	private static String buildUniqueKey(Identifier id, ItemStack stack) {
-		String nbtString = encodeStackNbt(stack);
-		if (nbtString != null && !nbtString.isBlank()) {
-			return id + "#" + nbtString;
+	/**
+	 * バイナリ形式で保存していた NBT からスナップショットを生成する。ItemStack への復元は表示時まで行わない。
+	 * バイナリ形式には {@link #toNbt()} の結果 (CODEC で書き出した正規形) しか書かないため、ここでは検証しない。
+	 */
+	public static Optional<SavedStack> fromNbt(NbtElement element) {
+		if (!(element instanceof NbtCompound compound)) {
+			return Optional.empty();
+		}
+		Identifier identifier = Identifier.tryParse(compound.getString(NBT_ID, ""));
+		if (identifier == null || !Registries.ITEM.containsId(identifier)) {
+			BuildingSupport.LOGGER.warn("Failed to decode ItemStack from NBT: unknown item {}", compound.getString(NBT_ID, ""));
+			return Optional.empty();
+		}
+		if (!compound.contains(NBT_COMPONENTS)) {
+			int count = Math.max(1, compound.getInt(NBT_COUNT, 1));
+			ItemStack stack = new ItemStack(Registries.ITEM.get(identifier), count);
+			return Optional.of(ofPlain(identifier, stack, StackFingerprint.of(identifier, null)));
 		}
-		JsonElement json = encodeStack(stack);
-		String jsonString = json.isJsonNull() ? "" : json.toString();
-		if (!jsonString.isBlank()) {
-			return id + "#" + jsonString;
+		return Optional.of(fromEncoded(identifier, compound));
+	}
+
+	// SNBT は手で書き換えられるうえ、表記が CODEC の出力と一致するとは限らない。
+	// 読み込み時に一度 CODEC で復元して検証し、capture() と同じ正規形から指紋を求める
+	private static Optional<SavedStack> fromTextNbt(NbtElement element) {
+		DataResult<ItemStack> result = ItemStack.CODEC.parse(context().nbtOps(), element);
+		if (result.result().isEmpty()) {
+			String error = result.error().map(partial -> partial.message()).orElse("unknown");
+			BuildingSupport.LOGGER.warn("Failed to decode ItemStack from SNBT: {}", error);
+			return Optional.empty();
 		}
-		return id.toString();
+		return capture(result.result().get());
 	}
 
+	private static SavedStack fromEncoded(Identifier identifier, NbtCompound compound) {
+		long fingerprint = StackFingerprint.of(identifier, compound.get(NBT_COMPONENTS));
+		int count = Math.max(1, compound.getInt(NBT_COUNT, 1));
+		byte[] bytes = writeNbt(compound);
+		if (bytes.length > COMPRESSION_THRESHOLD) {
+			byte[] deflated = deflate(bytes);
+			if (deflated.length < bytes.length) {
+				return SavedStackInterner.intern(new SavedStack(identifier, fingerprint, count, null, deflated, true));
+			}
+		}
+		return SavedStackInterner.intern(new SavedStack(identifier, fingerprint, count, null, bytes, false));
+	}
 
 	/**
 	 * Gson 経由でシリアライズ可能なフォームへ変換する。
@@ -110,23 +203,124 @@ public final class SavedStack {
 		Serialized serialized = new Serialized();
 		serialized.id = id.toString();
 		// すべての保存データをJSONとSNBTの両方で維持し、どの環境でも装飾情報を安全に再現する
-		serialized.stack = encodeStack(stack);
-		serialized.nbt = encodeStackNbt(stack);
+		Optional<NbtElement> nbt = toNbt();
+		serialized.stack = nbt.map(element -> NbtOps.INSTANCE.convertTo(JsonOps.INSTANCE, element)).orElse(JsonNull.INSTANCE);
+		serialized.nbt = nbt.map(NbtElement::toString).orElse("");
 		return serialized;
 	}
 
 	/**
-	 * UI などに表示するための ItemStack コピーを返す。
+	 * ItemStack の NBT を返す。バイナリ形式の保存に使う。
+	 */
+	public Optional<NbtElement> toNbt() {
+		if (plain != null) {
+			DataResult<NbtElement> result = ItemStack.CODEC.encodeStart(context().nbtOps(), plain);
+			if (result.result().isEmpty()) {
+				String error = result.error().map(partial -> partial.message()).orElse("unknown");
+				BuildingSupport.LOGGER.warn("Failed to encode ItemStack NBT for {}: {}", plain, error);
+			}
+			return result.result();
+		}
+		try {
+			return Optional.of(readNbt());
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.warn("Failed to read saved stack NBT: {}", id, exception);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * ネットワーク形式の NBT バイト列を返す。保持している形をそのまま使うため、ItemStack への復元を伴わない。
+	 */
+	Optional<byte[]> toNbtBytes() {
+		if (plain != null) {
+			return toNbt().map(SavedStack::writeNbt);
+		}
+		if (!compressed) {
+			return Optional.of(encoded);
+		}
+		try {
+			return Optional.of(inflate(encoded));
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.warn("Failed to inflate saved stack NBT: {}", id, exception);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * UI などに表示するための ItemStack コピーを返す。初回は保持している NBT から復元する。
 	 */
 	public ItemStack toItemStack() {
-		return stack.copy();
+		if (plain != null) {
+			return plain.copy();
+		}
+		ItemStack decoded;
+		synchronized (DECODED_CACHE) {
+			decoded = DECODED_CACHE.get(this);
+		}
+		if (decoded == null) {
+			decoded = decode();
+			synchronized (DECODED_CACHE) {
+				DECODED_CACHE.put(this, decoded);
+			}
+		}
+		// 復元結果は個数違いの同じスタックと共有しているため、個数はこのスナップショットの値に揃える
+		return decoded.copyWithCount(count);
+	}
+
+	private ItemStack decode() {
+		try {
+			NbtElement element = readNbt();
+			DataResult<ItemStack> result = ItemStack.CODEC.parse(context().nbtOps(), element);
+			if (result.result().isPresent()) {
+				return result.result().get();
+			}
+			String error = result.error().map(partial -> partial.message()).orElse("unknown");
+			BuildingSupport.LOGGER.warn("Failed to decode ItemStack from NBT: {}", error);
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.warn("Failed to read saved stack NBT: {}", id, exception);
+		}
+		// 装飾を復元できない場合もアイテム自体は表示できるようにする
+		return new ItemStack(Registries.ITEM.get(id), count);
+	}
+
+	private NbtElement readNbt() throws IOException {
+		InputStream input = new ByteArrayInputStream(encoded);
+		if (compressed) {
+			input = new InflaterInputStream(input);
+		}
+		try (DataInputStream in = new DataInputStream(input)) {
+			return NbtIo.read(in, NbtSizeTracker.ofUnlimitedBytes());
+		}
+	}
+
+	/**
+	 * アイテム ID とコンポーネントから求めた 64 ビットの指紋。個数は含めない。
+	 */
+	public long fingerprint() {
+		return fingerprint;
 	}
 
 	/**
-	 * ���ݒ��Ƀ}�l�[�W���̈ꗗ���A�t�H�g�o�[�g���𐧌䂷�邽�߂ɒ������l�B
+	 * 指紋を固定長の16進文字列にしたもの。履歴の索引や退避ファイルのキーに使う。
 	 */
 	public String uniqueKey() {
-		return uniqueKey;
+		return HEX.toHexDigits(fingerprint);
+	}
+
+	/**
+	 * {@link #uniqueKey()} の形式か判定する。旧バージョンの SNBT 形式のキーを見分けるために使う。
+	 */
+	public static boolean isUniqueKey(String key) {
+		if (key == null || key.length() != UNIQUE_KEY_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (Character.digit(key.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -136,48 +330,74 @@ public final class SavedStack {
 		return id;
 	}
 
-	public boolean isSameStack(SavedStack other) {
-		return other != null && ItemStack.areEqual(stack, other.stack);
+	/**
+	 * 保存時の個数。ItemStack へ復元せずに参照できる。
+	 */
+	public int count() {
+		return count;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		return other instanceof SavedStack saved && fingerprint == saved.fingerprint && id.equals(saved.id);
 	}
 
-	public boolean matches(ItemStack other) {
-		return other != null && ItemStack.areEqual(stack, other);
+	@Override
+	public int hashCode() {
+		return Long.hashCode(fingerprint);
 	}
 
 	public static synchronized void updateLookup(RegistryWrapper.WrapperLookup lookup) {
 		if (lookup == null) {
 			return;
 		}
-		CURRENT_LOOKUP = lookup;
-		NBT_OPS = RegistryOps.of(NbtOps.INSTANCE, CURRENT_LOOKUP);
-		JSON_OPS = RegistryOps.of(JsonOps.INSTANCE, CURRENT_LOOKUP);
+		// 各スレッドの Ops は次に使うときに参照の違いを検知して作り直される
+		RegistryLookupProvider.set(lookup);
+		clearDecodedCache();
 		BuildingSupport.LOGGER.debug("SavedStack registry lookup updated: {}", lookup);
 	}
 
+	/**
+	 * 組み込みレジストリへ戻す。組み込みレジストリは構築済みのものを使い回す。
+	 */
 	public static synchronized void resetLookup() {
-		updateLookup(BuiltinRegistries.createWrapperLookup());
+		RegistryLookupProvider.reset();
+		clearDecodedCache();
+		BuildingSupport.LOGGER.debug("SavedStack registry lookup reset to builtin registries");
 	}
 
-	private static JsonElement encodeStack(ItemStack stack) {
-		DataResult<JsonElement> result = ItemStack.CODEC.encodeStart(JSON_OPS, stack.copy());
-		if (result.result().isEmpty()) {
-			String error = result.error().map(partial -> partial.message()).orElse("unknown");
-			BuildingSupport.LOGGER.warn("ItemStack JSON のエンコードに失敗しました: {} / {}", stack, error);
+	// 復元済みのスタックは前のレジストリを参照しているため作り直させる
+	private static void clearDecodedCache() {
+		synchronized (DECODED_CACHE) {
+			DECODED_CACHE.clear();
 		}
-		return result.result().orElse(JsonNull.INSTANCE);
 	}
 
-	private static String encodeStackNbt(ItemStack stack) {
-		DataResult<NbtElement> result = ItemStack.CODEC.encodeStart(NBT_OPS, stack.copy());
-		if (result.result().isEmpty()) {
-			String error = result.error().map(partial -> partial.message()).orElse("unknown");
-			BuildingSupport.LOGGER.warn("Failed to encode ItemStack NBT for {}: {}", stack, error);
+	// 呼び出し元スレッド用の Ops を返す。レジストリ参照が差し替わっていれば作り直す
+	private static RegistryContext context() {
+		RegistryWrapper.WrapperLookup lookup = RegistryLookupProvider.get();
+		RegistryContext context = THREAD_CONTEXT.get();
+		if (context == null || context.lookup() != lookup) {
+			context = new RegistryContext(lookup, RegistryOps.of(NbtOps.INSTANCE, lookup), RegistryOps.of(JsonOps.INSTANCE, lookup));
+			THREAD_CONTEXT.set(context);
+		}
+		return context;
+	}
+
+	private static Optional<NbtElement> parseNbtString(String nbtString) {
+		try {
+			return Optional.of(StringNbtReader.fromOps(NbtOps.INSTANCE).read(nbtString));
+		} catch (Exception exception) {
+			BuildingSupport.LOGGER.warn("ItemStack の復元処理で例外が発生したため、空のスタックを返します: {}", nbtString, exception);
+			return Optional.empty();
 		}
-		return result.result().map(NbtElement::toString).orElse("");
 	}
 
 	private static ItemStack decodeStack(JsonElement element) {
-		DataResult<ItemStack> result = ItemStack.CODEC.parse(JSON_OPS, element);
+		DataResult<ItemStack> result = ItemStack.CODEC.parse(context().jsonOps(), element);
 		if (result.result().isEmpty()) {
 			String error = result.error().map(partial -> partial.message()).orElse("unknown");
 			BuildingSupport.LOGGER.warn("Failed to decode ItemStack from JSON: {}", error);
@@ -185,18 +405,34 @@ public final class SavedStack {
 		return result.result().map(ItemStack::copy).orElse(ItemStack.EMPTY);
 	}
 
-	private static ItemStack decodeStack(String nbtString) {
-		if (nbtString == null || nbtString.isBlank()) {
-			return ItemStack.EMPTY;
+	private static byte[] writeNbt(NbtElement element) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(buffer)) {
+			NbtIo.writeForNetwork(element, out);
+		} catch (IOException exception) {
+			// メモリ上への書き込みなので発生しない
+			throw new IllegalStateException(exception);
 		}
-		try {
-			NbtElement element = StringNbtReader.fromOps(NbtOps.INSTANCE).read(nbtString);
-			DataResult<ItemStack> result = ItemStack.CODEC.parse(NBT_OPS, element);
-			return result.result().map(ItemStack::copy).orElse(ItemStack.EMPTY);
-		} catch (Exception exception) {
-			BuildingSupport.LOGGER.warn("ItemStack の復元処理で例外が発生したため、空のスタックを返します: {}", nbtString, exception);
-			return ItemStack.EMPTY;
+		return buffer.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] bytes) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 2);
+		try (OutputStream out = new DeflaterOutputStream(buffer)) {
+			out.write(bytes);
+		} catch (IOException exception) {
+			throw new IllegalStateException(exception);
 		}
+		return buffer.toByteArray();
+	}
+
+	private static byte[] inflate(byte[] bytes) throws IOException {
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readAllBytes();
+		}
+	}
+
+	private record RegistryContext(RegistryWrapper.WrapperLookup lookup, RegistryOps<NbtElement> nbtOps, RegistryOps<JsonElement> jsonOps) {
 	}
 
 	/**
@@ -0,0 +1,87 @@
+package chihalu.building.support.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+import chihalu.building.support.BuildingSupport;
+
+/**
+ * 保存済みエントリの復元 (SNBT の解析や NBT の読み取り) を、件数の多いときだけ複数スレッドで行う。
+ * <p>
+ * 結果は入力と同じ順番で返すため、呼び出し側は逐次処理と同じように扱える。
+ * スレッド数には上限を設け、読み込み中もゲーム本体の処理に CPU を残す。
+ */
+public final class SavedStackDecoder {
+	// これより少ない件数はスレッドへ振り分けるほうが遅い
+	private static final int PARALLEL_THRESHOLD = 64;
+	private static final int MAX_PARALLELISM = 4;
+	private static volatile ForkJoinPool pool;
+
+	private SavedStackDecoder() {
+	}
+
+	/**
+	 * すべての入力を decoder で復元し、入力と同じ順番の結果を返す。
+	 * 復元中の例外はそのエントリだけを空として扱い、ほかのエントリの復元は続ける。
+	 */
+	public static <T> List<Optional<SavedStack>> decodeAll(List<T> inputs, Function<? super T, Optional<SavedStack>> decoder) {
+		if (inputs.size() < PARALLEL_THRESHOLD || parallelism() <= 1) {
+			List<Optional<SavedStack>> results = new ArrayList<>(inputs.size());
+			for (T input : inputs) {
+				results.add(decodeSafely(input, decoder));
+			}
+			return results;
+		}
+		// 並列ストリームは submit した先のプールで分割実行され、toList は入力順を保つ
+		return getPool().submit(() -> inputs.parallelStream()
+			.map(input -> decodeSafely(input, decoder))
+			.toList()).join();
+	}
+
+	/**
+	 * JSON から読み込んだエントリをまとめて復元する。
+	 */
+	public static List<Optional<SavedStack>> decodeSerialized(List<SavedStack.Serialized> entries) {
+		return decodeAll(entries, SavedStack::fromSerialized);
+	}
+
+	private static <T> Optional<SavedStack> decodeSafely(T input, Function<? super T, Optional<SavedStack>> decoder) {
+		if (input == null) {
+			return Optional.empty();
+		}
+		try {
+			return decoder.apply(input);
+		} catch (RuntimeException exception) {
+			BuildingSupport.LOGGER.warn("Failed to decode saved stack entry", exception);
+			return Optional.empty();
+		}
+	}
+
+	private static int parallelism() {
+		// 1スレッドはゲーム本体のために空けておく
+		return Math.max(1, Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	private static ForkJoinPool getPool() {
+		ForkJoinPool current = pool;
+		if (current == null) {
+			synchronized (SavedStackDecoder.class) {
+				current = pool;
+				if (current == null) {
+					current = new ForkJoinPool(parallelism(), forkJoinPool -> {
+						ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+						thread.setName("UtilityToolkit-Decode-" + thread.getPoolIndex());
+						thread.setDaemon(true);
+						return thread;
+					}, null, false);
+					pool = current;
+				}
+			}
+		}
+		return current;
+	}
+}
@@ -0,0 +1,208 @@
+package chihalu.building.support.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+
+import chihalu.building.support.BuildingSupport;
+
+/**
+ * 履歴・お気に入り・カスタムタブで共通に使うバイナリ保存形式。
+ * <pre>
+ * [int マジック "UTKS"][byte 形式バージョン]
+ * GZIP 圧縮 {
+ *   [ヘッダー NBT (任意の付帯情報)]
+ *   [int 件数]
+ *   件数分 { [int バイト長][エントリ NBT] }
+ * }
+ * </pre>
+ * 各エントリは {@link SavedStack#toNbt()} の結果で、長さ付きで並べるため壊れたエントリだけを読み飛ばせる。
+ */
+public final class SavedStackFile {
+	public static final String EXTENSION = ".dat";
+	private static final int MAGIC = 0x55544B53;
+	private static final byte FORMAT_VERSION = 1;
+	// 1エントリあたりの上限。壊れた長さでメモリを確保しないようにする
+	private static final int MAX_ENTRY_BYTES = 2 * 1024 * 1024;
+
+	private SavedStackFile() {
+	}
+
+	/**
+	 * スナップショット一式を一時ファイルへ書き出してから置き換える。
+	 */
+	public static void write(Path path, NbtCompound header, List<SavedStack> entries) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		List<byte[]> encoded = new ArrayList<>(entries.size());
+		for (SavedStack entry : entries) {
+			encodeEntry(entry).ifPresent(encoded::add);
+		}
+		try (DataOutputStream raw = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			raw.writeInt(MAGIC);
+			raw.writeByte(FORMAT_VERSION);
+			// 先頭の識別子だけは非圧縮のまま置き、以降を GZIP で圧縮する
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(raw)))) {
+				NbtIo.writeForNetwork(header == null ? new NbtCompound() : header, out);
+				out.writeInt(encoded.size());
+				for (byte[] bytes : encoded) {
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+		}
+		try {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException exception) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * 読めなかったファイルを、次の保存で上書きされないよう別名 (元の名前 + suffix) へ退避する。
+	 * 退避先に同名のファイルがあれば置き換える。退避できたかどうかを返す。
+	 */
+	public static boolean moveAside(Path path, String suffix) {
+		Path target = path.resolveSibling(path.getFileName() + suffix);
+		try {
+			Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+			BuildingSupport.LOGGER.warn("Moved unreadable file aside: {} -> {}", path, target);
+			return true;
+		} catch (IOException exception) {
+			BuildingSupport.LOGGER.error("Failed to move unreadable file aside: {}", path, exception);
+			return false;
+		}
+	}
+
+	/**
+	 * ファイル全体を読み込み、復元できたエントリを保存順に返す。
+	 */
+	public static Contents read(Path path) throws IOException {
+		try (DataInputStream in = openTable(path)) {
+			NbtCompound header = readHeader(in);
+			int count = in.readInt();
+			List<byte[]> rawEntries = new ArrayList<>(Math.max(0, Math.min(count, 4096)));
+			boolean damaged = false;
+			// ファイルからは順に切り出すだけにし、NBT の解析は後でまとめて並列に行う
+			for (int i = 0; i < count; i++) {
+				try {
+					rawEntries.add(readEntryBytes(in));
+				} catch (EOFException exception) {
+					// 書き込み途中で終了したファイルは読めたところまでを採用する
+					damaged = true;
+					break;
+				}
+			}
+			List<SavedStack> entries = new ArrayList<>(rawEntries.size());
+			for (Optional<SavedStack> decoded : SavedStackDecoder.decodeAll(rawEntries, SavedStackFile::decodeEntry)) {
+				if (decoded.isPresent()) {
+					entries.add(decoded.get());
+				} else {
+					damaged = true;
+				}
+			}
+			return new Contents(header, entries, count, damaged);
+		}
+	}
+
+	/**
+	 * ヘッダーと件数だけを読み、エントリ本体は展開しない。一覧表示用。
+	 */
+	public static Contents readHeader(Path path) throws IOException {
+		try (DataInputStream in = openTable(path)) {
+			NbtCompound header = readHeader(in);
+			int count = in.readInt();
+			return new Contents(header, List.of(), count, false);
+		}
+	}
+
+	/**
+	 * 1件分のスタックを非圧縮の NBT バイト列にする。追記型のファイルでも使う。
+	 */
+	public static Optional<byte[]> encodeEntry(SavedStack entry) {
+		// スナップショットが保持している NBT のバイト列をそのまま使い、ItemStack への復元を避ける
+		Optional<byte[]> bytes = entry.toNbtBytes();
+		if (bytes.isEmpty()) {
+			BuildingSupport.LOGGER.warn("Failed to encode saved stack: {}", entry.id());
+		}
+		return bytes;
+	}
+
+	public static Optional<SavedStack> decodeEntry(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			return Optional.empty();
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			NbtElement element = NbtIo.read(in, NbtSizeTracker.ofUnlimitedBytes());
+			return SavedStack.fromNbt(element);
+		} catch (IOException | RuntimeException exception) {
+			BuildingSupport.LOGGER.warn("Failed to decode saved stack entry", exception);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * エントリ NBT の先頭はタグ種別 (複合タグ) なので、テキスト形式のレコードと区別できる。
+	 */
+	public static boolean isBinaryEntry(byte[] bytes) {
+		return bytes != null && bytes.length > 0 && bytes[0] == NbtElement.COMPOUND_TYPE;
+	}
+
+	private static DataInputStream openTable(Path path) throws IOException {
+		InputStream file = new BufferedInputStream(Files.newInputStream(path));
+		try {
+			DataInputStream raw = new DataInputStream(file);
+			if (raw.readInt() != MAGIC) {
+				throw new IOException("Not a saved stack file: " + path);
+			}
+			byte version = raw.readByte();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported saved stack file version " + version + ": " + path);
+			}
+			return new DataInputStream(new BufferedInputStream(new GZIPInputStream(file)));
+		} catch (IOException exception) {
+			file.close();
+			throw exception;
+		}
+	}
+
+	private static NbtCompound readHeader(DataInputStream in) throws IOException {
+		NbtElement header = NbtIo.read(in, NbtSizeTracker.ofUnlimitedBytes());
+		return header instanceof NbtCompound compound ? compound : new NbtCompound();
+	}
+
+	private static byte[] readEntryBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_ENTRY_BYTES) {
+			throw new IOException("Invalid saved stack entry length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 読み込み結果。expectedCount は書き込み時の件数で、damaged は読み飛ばしや途中終了があったことを示す。
+	 */
+	public record Contents(NbtCompound header, List<SavedStack> entries, int expectedCount, boolean damaged) {
+	}
+}
@@ -0,0 +1,58 @@
+package chihalu.building.support.storage;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 同じ内容の {@link SavedStack} を1つのインスタンスにまとめる弱参照のプール。
+ * 履歴・お気に入り・カスタムタブに同じスタックが並んでも、保持する NBT と復元済みスタックは1つで済む。
+ * どの管理クラスからも参照されなくなったインスタンスは GC で回収され、プールからも消える。
+ */
+final class SavedStackInterner {
+	// 指紋と個数から作るキー -> インスタンス。内容はこのクラスのモニタで保護する
+	private static final Map<Long, Entry> POOL = new HashMap<>();
+	private static final ReferenceQueue<SavedStack> QUEUE = new ReferenceQueue<>();
+
+	private SavedStackInterner() {
+	}
+
+	/**
+	 * 同じ内容のインスタンスが既にあればそれを、無ければ candidate を登録して返す。
+	 */
+	static synchronized SavedStack intern(SavedStack candidate) {
+		expungeStaleEntries();
+		long key = keyOf(candidate);
+		Entry entry = POOL.get(key);
+		SavedStack existing = entry == null ? null : entry.get();
+		if (existing != null && existing.equals(candidate) && existing.count() == candidate.count()) {
+			return existing;
+		}
+		// 指紋が衝突した場合は後から来たものに置き換える (同一判定は equals で行うため結果は変わらない)
+		POOL.put(key, new Entry(key, candidate, QUEUE));
+		return candidate;
+	}
+
+	private static long keyOf(SavedStack stack) {
+		return stack.fingerprint() * 31L + stack.count();
+	}
+
+	private static void expungeStaleEntries() {
+		Object stale;
+		while ((stale = QUEUE.poll()) != null) {
+			Entry entry = (Entry) stale;
+			// 同じキーで新しいインスタンスが登録済みなら消さない
+			POOL.remove(entry.key, entry);
+		}
+	}
+
+	private static final class Entry extends WeakReference<SavedStack> {
+		private final long key;
+
+		private Entry(long key, SavedStack referent, ReferenceQueue<SavedStack> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+}
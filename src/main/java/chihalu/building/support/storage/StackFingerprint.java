@@ -0,0 +1,78 @@
+package chihalu.building.support.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.Identifier;
+
+/**
+ * アイテム ID とデータコンポーネントから、起動をまたいでも変わらない 64 ビットの指紋を求める (FNV-1a)。
+ * 複合タグはキーを並べ替えてから辿るため、コンポーネントの格納順に左右されない。個数は含めない。
+ */
+final class StackFingerprint {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private long hash = FNV_OFFSET_BASIS;
+
+	private StackFingerprint() {
+	}
+
+	/**
+	 * @param components ComponentChanges を NBT へ変換したもの。既定の状態なら null
+	 */
+	static long of(Identifier id, NbtElement components) {
+		StackFingerprint fingerprint = new StackFingerprint();
+		fingerprint.putString(id.toString());
+		if (components != null) {
+			fingerprint.putElement(components);
+		}
+		return fingerprint.hash;
+	}
+
+	private void putElement(NbtElement element) {
+		putByte(element.getType());
+		if (element instanceof NbtCompound compound) {
+			List<String> keys = new ArrayList<>(compound.getKeys());
+			Collections.sort(keys);
+			putInt(keys.size());
+			for (String key : keys) {
+				putString(key);
+				putElement(compound.get(key));
+			}
+		} else if (element instanceof NbtList list) {
+			putInt(list.size());
+			for (int i = 0; i < list.size(); i++) {
+				putElement(list.get(i));
+			}
+		} else {
+			// 数値や文字列などの末端は SNBT 表記がそのまま値を表す
+			putString(element.toString());
+		}
+	}
+
+	private void putString(String value) {
+		putInt(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			putByte(c >>> 8);
+			putByte(c);
+		}
+	}
+
+	private void putInt(int value) {
+		putByte(value >>> 24);
+		putByte(value >>> 16);
+		putByte(value >>> 8);
+		putByte(value);
+	}
+
+	private void putByte(int value) {
+		hash ^= value & 0xFF;
+		hash *= FNV_PRIME;
+	}
+}